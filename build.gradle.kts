@@ -3,6 +3,7 @@ plugins {
     application
     id("org.graalvm.buildtools.native") version "0.9.9"
     id("com.github.johnrengelman.shadow") version "7.1.2"
+    id("me.champeau.jmh") version "0.6.6"
     `maven-publish`
 }
 
@@ -13,24 +14,37 @@ repositories {
     mavenCentral()
 }
 
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(17))
+    }
+    registerFeature("spoon") {
+        usingSourceSet(sourceSets["main"])
+    }
+}
+
 dependencies {
 
     val jbock = "5.12"
     implementation("io.github.jbock-java:jbock:$jbock")
     annotationProcessor("io.github.jbock-java:jbock-compiler:$jbock")
 
-    implementation("fr.inria.gforge.spoon:spoon-core:10.0.0")
+    // only needed for the spoon adapter, see the "spoon" feature above
+    "spoonImplementation"("fr.inria.gforge.spoon:spoon-core:10.0.0")
+
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.1")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.1")
 }
 
-java {
-    toolchain {
-        languageVersion.set(JavaLanguageVersion.of(17))
+// the native image leaves out spoon, it's only used for --spoon and relies on reflection all over the place
+val nativeImageClasspath: Configuration by configurations.creating {
+    extendsFrom(configurations.implementation.get(), configurations.runtimeOnly.get())
+    isCanBeConsumed = false
+    attributes {
+        attribute(Usage.USAGE_ATTRIBUTE, objects.named(Usage.JAVA_RUNTIME))
     }
 }
 
-
 application {
     mainClass.set("com.github.firmwehr.reforest.RandomProgramGenerator")
 }
@@ -45,10 +59,19 @@ graalvmNative {
             verbose.set(true) // Add verbose output, defaults to false
             sharedLibrary.set(false) // Determines if image is a shared library, defaults to false if `java-library` plugin isn't included
             buildArgs.add("--allow-incomplete-classpath")
+            buildArgs.add("--no-fallback") // a fallback image would need a JVM after all
+            classpath.setFrom(sourceSets["main"].output, nativeImageClasspath)
         }
     }
 }
 
+// benchmarks live in src/jmh, run all of them with "gradlew jmh"
+jmh {
+    jmhVersion.set("1.34")
+    profilers.add("gc")
+    resultFormat.set("JSON") // written to build/results/jmh, to compare releases
+}
+
 tasks.getByName<Test>("test") {
     useJUnitPlatform()
 }
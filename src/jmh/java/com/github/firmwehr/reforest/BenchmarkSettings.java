@@ -0,0 +1,44 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.util.WordList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Settings shared by the benchmarks. They match the defaults of the command line, except for the
+ * sizes the benchmarks are parameterized with.
+ */
+final class BenchmarkSettings {
+    static final Path WORD_LIST = Path.of("src", "main", "resources", "words.txt");
+
+    private BenchmarkSettings() {
+    }
+
+    static WordList loadWords() {
+        try {
+            return WordList.load(WORD_LIST);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static RandomSourceGeneratorSettings create(WordList words, int maxTypes, int maxStatementsPerBlock) {
+        GrammarWeights grammarWeights = GrammarWeights.DEFAULT;
+        return new RandomSourceGeneratorSettings(
+                0.3,
+                0.15,
+                24,
+                10,
+                maxTypes,
+                10,
+                maxStatementsPerBlock,
+                words,
+                grammarWeights.statementWeights(),
+                grammarWeights.primaryExpressionWeights(),
+                grammarWeights.operatorProbabilities(),
+                null
+        );
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.SourceGenerator.AccessContext;
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.util.WordList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The generator at several program sizes, from single expressions up to whole programs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+    @Param({"5", "20"})
+    public int maxTypes;
+
+    @Param({"5", "15"})
+    public int maxStatementsPerBlock;
+
+    private RandomSourceGeneratorSettings settings;
+    private RandomSourceGenerator generator;
+    private ClassSkeleton skeleton;
+    private Method method;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        WordList words = BenchmarkSettings.loadWords();
+        this.settings = BenchmarkSettings.create(words, this.maxTypes, this.maxStatementsPerBlock);
+        // expressions and blocks need a class with a method to generate them in
+        for (long seed = 0; this.method == null; seed++) {
+            this.generator = RandomProgramGenerator.createGenerator(seed, this.settings);
+            for (ClassSkeleton skeleton : this.generator.generateSkeletons()) {
+                if (!skeleton.methods().isEmpty()) {
+                    this.skeleton = skeleton;
+                    this.method = skeleton.methods().get(0);
+                    break;
+                }
+            }
+        }
+    }
+
+    private AccessContext context() {
+        return new AccessContext(
+                new SymbolTable(this.method.parameters(), this.skeleton.fields()),
+                this.skeleton,
+                this.skeleton,
+                this.method.returnType(),
+                0
+        );
+    }
+
+    @Benchmark
+    public Expression generateExpression() {
+        return this.generator.generateExpression(context(), Type.INT);
+    }
+
+    @Benchmark
+    public Block generateBlock() {
+        return this.generator.generateBlock(context(), this.method.returnType());
+    }
+
+    @Benchmark
+    public List<ClassDeclaration> generateProgram() {
+        return RandomProgramGenerator.createGenerator(this.seed++, this.settings).generateProgram();
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.util.FingerprintSet;
+import com.github.firmwehr.reforest.util.IdentifierGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentifierBenchmark {
+    @Param({"8", "24"})
+    public int length;
+
+    private RandomGenerator random;
+    private IdentifierGenerator identifiers;
+    private FingerprintSet scope;
+
+    @Setup
+    public void setup() {
+        this.random = RandomGeneratorFactory.getDefault().create(42);
+        this.identifiers = new IdentifierGenerator(BenchmarkSettings.loadWords());
+        this.scope = new FingerprintSet();
+    }
+
+    @Benchmark
+    public String upperCamelCase() {
+        return this.identifiers.upperCamelCase(this.random, this.length);
+    }
+
+    @Benchmark
+    public String lowerCamelCase() {
+        return this.identifiers.lowerCamelCase(this.random, this.length);
+    }
+
+    @Benchmark
+    public String uniqueLowerCamelCase() {
+        // scopes of generated programs are small, don't let the set grow for the whole run
+        if (this.scope.size() == 64) {
+            this.scope.clear();
+        }
+        return this.identifiers.uniqueLowerCamelCase(this.random, this.length, this.scope);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Printing a fixed set of programs, and generating while printing as the command line does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrinterBenchmark {
+    private static final int PROGRAMS = 16;
+
+    private RandomSourceGeneratorSettings settings;
+    private List<List<ClassDeclaration>> programs;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        this.settings = BenchmarkSettings.create(BenchmarkSettings.loadWords(), 5, 15);
+        this.programs = new ArrayList<>();
+        for (long seed = 0; seed < PROGRAMS; seed++) {
+            this.programs.add(RandomProgramGenerator.createGenerator(seed, this.settings).generateProgram());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROGRAMS)
+    public void printProgram() throws IOException {
+        MiniJavaPrinter printer = new MiniJavaPrinter(Writer.nullWriter());
+        for (List<ClassDeclaration> program : this.programs) {
+            printer.printProgram(program);
+        }
+    }
+
+    @Benchmark
+    public List<ClassSkeleton> generateAndPrintProgram() throws IOException {
+        return RandomProgramGenerator.createGenerator(this.seed++, this.settings)
+                .generateProgram(new MiniJavaPrinter(Writer.nullWriter()));
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.util.MappedWordList;
+import com.github.firmwehr.reforest.util.WordList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the text word list versus mapping the compiled one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordListBenchmark {
+    private Path compiled;
+
+    @Setup
+    public void setup() throws IOException {
+        this.compiled = Files.createTempFile("words", ".bin");
+        Files.delete(this.compiled);
+        MappedWordList.compile(WordList.readTextFile(BenchmarkSettings.WORD_LIST), this.compiled);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.compiled);
+    }
+
+    @Benchmark
+    public WordList loadText() throws IOException {
+        return WordList.load(BenchmarkSettings.WORD_LIST);
+    }
+
+    @Benchmark
+    public WordList loadCompiled() throws IOException {
+        return WordList.load(this.compiled);
+    }
+}
@@ -0,0 +1,301 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.util.CorpusArchive;
+import com.github.firmwehr.reforest.util.HashStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates many programs with consecutive seeds in parallel. Each program only depends on its own seed,
+ * so the files written are the same regardless of the amount of threads used.
+ * <p>
+ * Optionally, programs structurally equal to one generated before are skipped, see {@link StructuralHasher}.
+ * Whether a program is new is decided in the order of the seeds, so the same programs are skipped
+ * regardless of the amount of threads as well. Until then, programs are written to a temporary file, which is
+ * renamed once the program is kept. Threads only generate a few programs ahead of the first undecided one, so
+ * the programs waiting for a decision don't pile up behind a slow one.
+ * <p>
+ * Instead of a directory, the programs can be written to a {@link CorpusArchive}. They are added to it in the
+ * order of the seeds too, so the archive is the same regardless of the amount of threads.
+ */
+public class BatchGenerator {
+    private final RandomSourceGeneratorSettings settings;
+    private final Path outputDirectory;
+    private final CorpusArchive.Writer archive;
+    private final int threads;
+    private final GenerationStats stats;
+    private final Deduplication deduplication;
+    private final HashStore seenHashes;
+    private final int maxUndecided;
+
+    // programs that were generated but not decided on yet, as a program with a lower seed is still
+    // generated. Guarded by itself, like the hash store, the archive, the next seed to decide on and
+    // whether a thread failed, so the others stop waiting for decisions
+    private final Map<Long, Generated> undecided = new HashMap<>();
+    private long nextDecision;
+    private boolean failed;
+    private final LongAdder skipped = new LongAdder();
+
+    public BatchGenerator(RandomSourceGeneratorSettings settings, Path outputDirectory, int threads,
+                          GenerationStats stats) {
+        this(settings, outputDirectory, threads, stats, null, null);
+    }
+
+    /**
+     * @param deduplication which programs to skip, or {@code null} to keep all
+     * @param seenHashes the hashes of programs generated before, which new programs are added to
+     */
+    public BatchGenerator(RandomSourceGeneratorSettings settings, Path outputDirectory, int threads,
+                          GenerationStats stats, Deduplication deduplication, HashStore seenHashes) {
+        this(settings, outputDirectory, null, threads, stats, deduplication, seenHashes);
+    }
+
+    /**
+     * Writes the programs to the given archive instead of a directory, the archive has to cover their seeds.
+     *
+     * @param deduplication which programs to skip, or {@code null} to keep all
+     * @param seenHashes the hashes of programs generated before, which new programs are added to
+     */
+    public BatchGenerator(RandomSourceGeneratorSettings settings, CorpusArchive.Writer archive, int threads,
+                          GenerationStats stats, Deduplication deduplication, HashStore seenHashes) {
+        this(settings, null, archive, threads, stats, deduplication, seenHashes);
+    }
+
+    private BatchGenerator(RandomSourceGeneratorSettings settings, Path outputDirectory,
+                           CorpusArchive.Writer archive, int threads, GenerationStats stats,
+                           Deduplication deduplication, HashStore seenHashes) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The amount of threads must be positive, was %d".formatted(threads));
+        }
+        if ((deduplication == null) != (seenHashes == null)) {
+            throw new IllegalArgumentException("Deduplication needs a hash store and vice versa");
+        }
+        this.settings = settings;
+        this.outputDirectory = outputDirectory;
+        this.archive = archive;
+        this.threads = threads;
+        this.stats = stats;
+        this.deduplication = deduplication;
+        this.seenHashes = seenHashes;
+        // enough to keep all threads busy while a program takes a few times longer than the others
+        this.maxUndecided = 4 * threads;
+    }
+
+    /**
+     * Generates {@code count} programs with the seeds {@code firstSeed} to {@code firstSeed + count - 1}
+     * and writes them to {@code prog-<seed>.java} in the output directory, or to the archive.
+     *
+     * @param firstSeed the seed of the first program
+     * @param count the amount of programs to generate
+     * @throws IOException if a program could not be written
+     */
+    public void generate(long firstSeed, int count) throws IOException {
+        if (this.outputDirectory != null) {
+            Files.createDirectories(this.outputDirectory);
+        }
+        AtomicLong nextSeed = new AtomicLong(firstSeed);
+        synchronized (this.undecided) {
+            this.undecided.clear();
+            this.nextDecision = firstSeed;
+            this.failed = false;
+        }
+        long endSeed = firstSeed + count;
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(this.threads, count); i++) {
+                workers.add(pool.submit(() -> {
+                    try {
+                        // the generator keeps per-program state, which is reset for every program
+                        RandomSourceGenerator generator = RandomProgramGenerator.createGenerator(firstSeed,
+                                this.settings, this.stats);
+                        long seed;
+                        while ((seed = nextSeed.getAndIncrement()) < endSeed && awaitDecisions(seed)) {
+                            generator.reset(seed);
+                            writeProgram(generator, seed);
+                        }
+                    } catch (RuntimeException | Error e) {
+                        // the program of this thread is never decided on, so nobody may wait for it
+                        synchronized (this.undecided) {
+                            this.failed = true;
+                            this.undecided.notifyAll();
+                        }
+                        throw e;
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating programs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IllegalStateException("Failed to generate programs", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * {@return the amount of programs skipped as duplicates}
+     */
+    public long skipped() {
+        return this.skipped.sum();
+    }
+
+    private void writeProgram(RandomSourceGenerator generator, long seed) {
+        try {
+            if (this.archive != null) {
+                compressProgram(generator, seed);
+                return;
+            }
+            Path path = programPath(this.outputDirectory, seed);
+            // programs are generated in parallel already, so their method bodies are generated in this thread
+            if (this.deduplication == null) {
+                RandomProgramGenerator.writeProgram(path, generator, this.stats, null, null);
+                return;
+            }
+            StructuralHasher hasher = new StructuralHasher();
+            RandomProgramGenerator.writeProgram(temporaryPath(path), generator, this.stats, null, hasher);
+            decide(seed, new Generated(deduplicationHashes(hasher), null));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void compressProgram(RandomSourceGenerator generator, long seed) throws IOException {
+        // the program is compressed in this thread, only adding it to the archive is serialized
+        StructuralHasher hasher = new StructuralHasher();
+        String source = RandomProgramGenerator.generateSource(generator, null, hasher);
+        CorpusArchive.Entry entry = CorpusArchive.Entry.compress(source, hasher.programHash());
+        this.stats.program(entry.sourceLength());
+        decide(seed, new Generated(deduplicationHashes(hasher), entry));
+    }
+
+    private long[] deduplicationHashes(StructuralHasher hasher) {
+        if (this.deduplication == null) {
+            return null;
+        }
+        return switch (this.deduplication) {
+            case PROGRAM -> new long[]{hasher.programHash()};
+            case METHOD -> hasher.methodHashes();
+        };
+    }
+
+    /**
+     * Waits until the given seed is less than {@link #maxUndecided} seeds ahead of the next program to decide on.
+     * The thread generating that program never waits, so the programs are always decided on eventually.
+     *
+     * @return whether to generate the program, {@code false} if another thread failed
+     */
+    private boolean awaitDecisions(long seed) {
+        if (this.archive == null && this.deduplication == null) {
+            return true; // nothing to decide on
+        }
+        synchronized (this.undecided) {
+            try {
+                while (!this.failed && seed - this.nextDecision >= this.maxUndecided) {
+                    this.undecided.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return !this.failed;
+        }
+    }
+
+    /**
+     * Decides on all programs that can be decided on now that the given one was generated. Instead of waiting
+     * for programs with lower seeds, which would keep this thread from generating, the thread generating the
+     * last missing program decides on the waiting ones.
+     */
+    private void decide(long seed, Generated generated) throws IOException {
+        synchronized (this.undecided) {
+            this.undecided.put(seed, generated);
+            Generated next;
+            boolean decided = false;
+            while ((next = this.undecided.remove(this.nextDecision)) != null) {
+                boolean keep = next.hashes() == null || addHashes(next.hashes());
+                if (next.entry() != null) {
+                    if (keep) {
+                        this.archive.add(this.nextDecision, next.entry());
+                    }
+                } else {
+                    Path path = programPath(this.outputDirectory, this.nextDecision);
+                    if (keep) {
+                        Files.move(temporaryPath(path), path, StandardCopyOption.REPLACE_EXISTING);
+                    } else {
+                        Files.delete(temporaryPath(path));
+                    }
+                }
+                if (!keep) {
+                    this.skipped.increment();
+                }
+                this.nextDecision++;
+                decided = true;
+            }
+            if (decided) {
+                this.undecided.notifyAll();
+            }
+        }
+    }
+
+    private boolean addHashes(long[] hashes) throws IOException {
+        // in method mode, a program is new if any of its methods is, all of them are remembered regardless.
+        // Programs without methods have nothing to compare, so they are kept
+        boolean added = hashes.length == 0;
+        for (long hash : hashes) {
+            added |= this.seenHashes.add(hash);
+        }
+        return added;
+    }
+
+    static Path programPath(Path directory, long seed) {
+        return directory.resolve("prog-" + seed + ".java");
+    }
+
+    private static Path temporaryPath(Path programPath) {
+        return programPath.resolveSibling(programPath.getFileName() + ".part");
+    }
+
+    /**
+     * A generated program waiting to be decided on.
+     *
+     * @param hashes the hashes to deduplicate by, or {@code null} to keep the program
+     * @param entry the compressed program to add to the archive, or {@code null} if it was written to a temporary file
+     */
+    private record Generated(long[] hashes, CorpusArchive.Entry entry) {
+    }
+
+    /**
+     * Which programs are skipped as duplicates.
+     */
+    public enum Deduplication {
+        /**
+         * Skip a program if one with the same structure was generated before.
+         */
+        PROGRAM,
+        /**
+         * Skip a program if each of its methods has the same structure as one generated before.
+         */
+        METHOD
+    }
+}
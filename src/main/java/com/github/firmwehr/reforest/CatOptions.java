@@ -0,0 +1,28 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.Options.ExistingFileConverter;
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Parameter;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Command(name = "cat", description = "Prints programs of a corpus archive written with --archive")
+public interface CatOptions {
+
+    @Parameter(
+            index = 0,
+            paramLabel = "ARCHIVE",
+            converter = ExistingFileConverter.class,
+            description = "The path of the corpus archive"
+    )
+    Path archivePath();
+
+    @Option(
+            names = {"--seed", "-s"},
+            paramLabel = "LONG",
+            description = "The seed of a program to print. Can be given multiple times, defaults to all programs"
+    )
+    List<Long> seeds();
+}
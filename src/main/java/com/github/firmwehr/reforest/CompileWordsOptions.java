@@ -0,0 +1,28 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.Options.ExistingFileConverter;
+import com.github.firmwehr.reforest.Options.NonExistentFileConverter;
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.nio.file.Path;
+
+@Command(name = "compile-words", description = "Compiles a word list into the memory-mapped format")
+public interface CompileWordsOptions {
+
+    @Option(
+            names = {"--words", "-w"},
+            paramLabel = "PATH",
+            converter = ExistingFileConverter.class,
+            description = "The path to the word list text file to compile"
+    )
+    Path wordList();
+
+    @Option(
+            names = {"--output", "-o"},
+            paramLabel = "PATH",
+            converter = NonExistentFileConverter.class,
+            description = "The path of the compiled word list to write"
+    )
+    Path outputPath();
+}
@@ -0,0 +1,38 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.Options.ExistingFileConverter;
+import net.jbock.Command;
+import net.jbock.Option;
+import net.jbock.Parameter;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Command(
+        name = "extract",
+        description = "Writes programs of a corpus archive written with --archive to files, named like in a batch run"
+)
+public interface ExtractOptions {
+
+    @Parameter(
+            index = 0,
+            paramLabel = "ARCHIVE",
+            converter = ExistingFileConverter.class,
+            description = "The path of the corpus archive"
+    )
+    Path archivePath();
+
+    @Option(
+            names = {"--output-dir", "-d"},
+            paramLabel = "PATH",
+            description = "The directory to write the programs to"
+    )
+    Path outputDirectory();
+
+    @Option(
+            names = {"--seed", "-s"},
+            paramLabel = "LONG",
+            description = "The seed of a program to extract. Can be given multiple times, defaults to all programs"
+    )
+    List<Long> seeds();
+}
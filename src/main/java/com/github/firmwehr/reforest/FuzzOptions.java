@@ -0,0 +1,67 @@
+package com.github.firmwehr.reforest;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+@Command(
+        name = "fuzz",
+        description = "Compiles generated programs with several compilers and saves the programs they disagree on. "
+                + "The programs are generated from the options after '--', which are the same as for generating one"
+)
+public interface FuzzOptions {
+
+    @Option(
+            names = {"--compiler", "-c"},
+            paramLabel = "COMMAND",
+            description = "A command compiling a program, split at whitespace. {} is replaced with the path of the "
+                    + "program, which is appended as last argument otherwise. Can be given multiple times"
+    )
+    List<String> compilers();
+
+    @Option(
+            names = {"--exit-code", "-e"},
+            paramLabel = "INTEGER",
+            description = "The exit code all compilers should exit with. Defaults to 0"
+    )
+    OptionalInt exitCode();
+
+    @Option(
+            names = "--timeout",
+            paramLabel = "SECONDS",
+            description = "The time after which a compiler is killed. Defaults to 60 seconds"
+    )
+    OptionalLong timeoutSeconds();
+
+    @Option(
+            names = {"--output-dir", "-d"},
+            paramLabel = "PATH",
+            description = "The directory to save failed programs to, along with the output of the compilers"
+    )
+    Path outputDirectory();
+
+    @Option(
+            names = {"--count", "-n"},
+            paramLabel = "LONG",
+            description = "The amount of programs to generate. Runs until interrupted by default"
+    )
+    OptionalLong count();
+
+    @Option(
+            names = "--generator-threads",
+            paramLabel = "INTEGER",
+            description = "The amount of threads generating programs. Defaults to 1"
+    )
+    OptionalInt generatorThreads();
+
+    @Option(
+            names = {"--threads", "-t"},
+            paramLabel = "INTEGER",
+            description = "The amount of programs to compile in parallel. Defaults to the number of available processors"
+    )
+    OptionalInt compilerThreads();
+}
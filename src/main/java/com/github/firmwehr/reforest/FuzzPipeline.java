@@ -0,0 +1,272 @@
+package com.github.firmwehr.reforest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates programs and compiles each of them with several compilers, saving the programs they disagree on.
+ * <p>
+ * Generator threads put programs into a bounded queue, so they never run far ahead of the compiler threads,
+ * which take them from there. A program fails if the compilers exit with different codes or print different
+ * output, or if any of them exits with an unexpected code. Failed programs are saved with their seed.
+ */
+public class FuzzPipeline {
+    private static final String PATH_PLACEHOLDER = "{}";
+    private static final int TIMED_OUT = -1;
+    // tells a compiler thread that no more programs will come
+    private static final GeneratedProgram END = new GeneratedProgram(0, "");
+
+    private final RandomSourceGeneratorSettings settings;
+    private final List<List<String>> compilers;
+    private final int expectedExitCode;
+    private final Duration timeout;
+    private final Path outputDirectory;
+    private final int generatorThreads;
+    private final int compilerThreads;
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder compiled = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder unexpectedExitCodes = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param settings the settings to generate programs with
+     * @param compilers the commands to compile programs with. {@value PATH_PLACEHOLDER} is replaced with the path
+     *                  of the program, which is appended as last argument if the command has no placeholder
+     * @param expectedExitCode the exit code all compilers should exit with
+     * @param timeout the time after which a compiler is killed
+     * @param outputDirectory the directory to save failed programs to
+     * @param generatorThreads the amount of threads generating programs
+     * @param compilerThreads the amount of threads running compilers
+     */
+    public FuzzPipeline(RandomSourceGeneratorSettings settings, List<List<String>> compilers, int expectedExitCode,
+                        Duration timeout, Path outputDirectory, int generatorThreads, int compilerThreads) {
+        if (compilers.isEmpty()) {
+            throw new IllegalArgumentException("At least one compiler is needed");
+        }
+        if (generatorThreads <= 0 || compilerThreads <= 0) {
+            throw new IllegalArgumentException("The amount of threads must be positive, was %d and %d"
+                    .formatted(generatorThreads, compilerThreads));
+        }
+        this.settings = settings;
+        this.compilers = List.copyOf(compilers);
+        this.expectedExitCode = expectedExitCode;
+        this.timeout = timeout;
+        this.outputDirectory = outputDirectory;
+        this.generatorThreads = generatorThreads;
+        this.compilerThreads = compilerThreads;
+    }
+
+    /**
+     * Runs the pipeline for the programs with the seeds {@code firstSeed} to {@code firstSeed + count - 1},
+     * printing statistics to the given stream every second.
+     *
+     * @param firstSeed the seed of the first program
+     * @param count the amount of programs to generate, {@link Long#MAX_VALUE} to run until interrupted
+     * @param statistics the stream to print statistics to
+     * @throws IOException if a program could not be compiled or saved
+     */
+    public void run(long firstSeed, long count, PrintStream statistics) throws IOException {
+        Files.createDirectories(this.outputDirectory);
+        Path workDirectory = Files.createTempDirectory("reforest-fuzz");
+        BlockingQueue<GeneratedProgram> queue = new ArrayBlockingQueue<>(this.compilerThreads * 2);
+        AtomicLong nextIndex = new AtomicLong();
+        AtomicReference<Exception> compilerFailure = new AtomicReference<>();
+        long startNanos = System.nanoTime();
+        ExecutorService generators = Executors.newFixedThreadPool(this.generatorThreads);
+        // compiler threads mostly wait for processes, so they don't belong in a fork join pool either
+        ExecutorService compilerWorkers = Executors.newFixedThreadPool(this.compilerThreads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> statistics.println(statistics(startNanos)), 1, 1, TimeUnit.SECONDS);
+        try {
+            CompletionService<Void> generatorResults = new ExecutorCompletionService<>(generators);
+            for (int i = 0; i < this.generatorThreads; i++) {
+                generatorResults.submit(() -> {
+                    // the generator keeps per-program state, which is reset for every program
+                    RandomSourceGenerator generator = RandomProgramGenerator.createGenerator(firstSeed, this.settings);
+                    long index;
+                    while ((index = nextIndex.getAndIncrement()) < count) {
+                        queue.put(generate(generator, firstSeed + index));
+                    }
+                    return null;
+                });
+            }
+            List<Future<?>> compilerResults = new ArrayList<>();
+            for (int i = 0; i < this.compilerThreads; i++) {
+                compilerResults.add(compilerWorkers.submit(() -> {
+                    try {
+                        GeneratedProgram program;
+                        while ((program = queue.take()) != END) {
+                            compile(program, workDirectory);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // the generators would wait for free space in the queue forever
+                        compilerFailure.set(e);
+                        generators.shutdownNow();
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            // in the order they finish, so a failed generator isn't waiting for the ones before it
+            for (int i = 0; i < this.generatorThreads; i++) {
+                generatorResults.take().get();
+            }
+            for (int i = 0; i < this.compilerThreads; i++) {
+                // compiler threads only end before taking their END if they failed, and then the queue may stay full
+                while (!queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    for (Future<?> result : compilerResults) {
+                        if (result.isDone()) {
+                            result.get();
+                        }
+                    }
+                }
+            }
+            for (Future<?> result : compilerResults) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fuzzing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = compilerFailure.get() != null ? compilerFailure.get() : e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            } else if (cause instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Failed to fuzz", cause);
+        } finally {
+            reporter.shutdownNow();
+            generators.shutdownNow();
+            compilerWorkers.shutdownNow();
+            statistics.println(statistics(startNanos));
+            Files.deleteIfExists(workDirectory);
+        }
+    }
+
+    private GeneratedProgram generate(RandomSourceGenerator generator, long seed) {
+        generator.reset(seed);
+        // programs are generated in parallel already, so their method bodies are generated in this thread
+        String source = RandomProgramGenerator.generateSource(generator);
+        this.generated.increment();
+        return new GeneratedProgram(seed, source);
+    }
+
+    private void compile(GeneratedProgram program, Path workDirectory) throws IOException, InterruptedException {
+        Path path = workDirectory.resolve("prog-" + program.seed() + ".java");
+        Files.writeString(path, program.source());
+        List<CompileResult> results = new ArrayList<>(this.compilers.size());
+        try {
+            for (List<String> compiler : this.compilers) {
+                results.add(compile(compiler, path));
+            }
+        } finally {
+            Files.delete(path);
+        }
+        this.compiled.increment();
+        boolean mismatch = results.stream().anyMatch(r -> !r.sameOutcome(results.get(0)));
+        boolean unexpectedExitCode = results.stream().anyMatch(r -> r.exitCode() != this.expectedExitCode);
+        if (mismatch) {
+            this.mismatches.increment();
+        }
+        if (unexpectedExitCode) {
+            this.unexpectedExitCodes.increment();
+        }
+        if (mismatch || unexpectedExitCode) {
+            // a program can both mismatch and exit unexpectedly, but is only saved once
+            this.failed.increment();
+            save(program, results);
+        }
+    }
+
+    private CompileResult compile(List<String> compiler, Path path) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(compiler.size() + 1);
+        for (String argument : compiler) {
+            command.add(argument.replace(PATH_PLACEHOLDER, path.toString()));
+        }
+        if (compiler.stream().noneMatch(argument -> argument.contains(PATH_PLACEHOLDER))) {
+            command.add(path.toString());
+        }
+        Path output = Files.createTempFile(path.getParent(), "output", ".txt");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(output.toFile())
+                    .start();
+            int exitCode;
+            if (process.waitFor(this.timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                exitCode = process.exitValue();
+            } else {
+                // compiler drivers start the actual compiler as a child process, which would keep running
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly().waitFor();
+                this.timeouts.increment();
+                exitCode = TIMED_OUT;
+            }
+            // compilers don't necessarily print UTF-8, this keeps every byte
+            return new CompileResult(String.join(" ", command), exitCode, Files.readString(output, StandardCharsets.ISO_8859_1));
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    private void save(GeneratedProgram program, List<CompileResult> results) throws IOException {
+        Files.writeString(this.outputDirectory.resolve("prog-" + program.seed() + ".java"), program.source());
+        StringBuilder report = new StringBuilder();
+        for (CompileResult result : results) {
+            report.append("$ ").append(result.command()).append('\n')
+                    .append(result.exitCode() == TIMED_OUT ? "timed out" : "exit code " + result.exitCode()).append('\n')
+                    .append(result.output()).append('\n');
+        }
+        Files.writeString(this.outputDirectory.resolve("prog-" + program.seed() + ".txt"), report,
+                StandardCharsets.ISO_8859_1);
+    }
+
+    private String statistics(long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long compiled = this.compiled.sum();
+        return "%d generated, %d compiled (%.1f/s), %d failed: %d mismatches, %d unexpected exit codes, %d timeouts"
+                .formatted(this.generated.sum(), compiled, compiled / seconds, this.failed.sum(),
+                        this.mismatches.sum(), this.unexpectedExitCodes.sum(), this.timeouts.sum());
+    }
+
+    /**
+     * {@return the amount of programs saved}
+     */
+    public long failed() {
+        return this.failed.sum();
+    }
+
+    private record GeneratedProgram(long seed, String source) {
+    }
+
+    private record CompileResult(String command, int exitCode, String output) {
+
+        boolean sameOutcome(CompileResult other) {
+            return this.exitCode == other.exitCode && this.output.equals(other.output);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.GenerationLimits;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.SizeTarget;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Generates programs on request, so many programs can be generated by a single, warmed up JVM.
+ * <p>
+ * Requests are single lines of the form {@code <id> <seed> [<option>=<value>...]}, where the options
+ * override the settings of the server for this request, e.g. {@code type-limit=20}. Each request is answered
+ * with a line {@code <id> ok <bytes>}, followed by that many bytes of the UTF-8 encoded program, or with a line
+ * {@code <id> error <message>}. Requests are generated concurrently, so responses may come in a different order.
+ * Only a limited amount of requests per client is in flight, further requests aren't read until one of them
+ * is answered.
+ */
+public class GenerationServer implements AutoCloseable {
+    private final RandomSourceGeneratorSettings settings;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    // reused by the requests without overrides, see RandomSourceGenerator#reset
+    private final ThreadLocal<RandomSourceGenerator> generators;
+    // connections mostly block on reading requests, so they get their own threads
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private volatile ServerSocketChannel socket;
+
+    public GenerationServer(RandomSourceGeneratorSettings settings, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The amount of threads must be positive, was %d".formatted(threads));
+        }
+        this.settings = settings;
+        this.executor = Executors.newFixedThreadPool(threads);
+        // enough to keep all threads busy while the responses are written
+        this.maxInFlight = 4 * threads;
+        this.generators = ThreadLocal.withInitial(() -> RandomProgramGenerator.createGenerator(0, settings));
+    }
+
+    /**
+     * Generates and discards programs, so the code used for generating them is compiled by the JIT
+     * before the first request.
+     *
+     * @param programs the amount of programs to generate
+     */
+    public void warmUp(int programs) {
+        for (int seed = 0; seed < programs; seed++) {
+            generate(seed, this.settings);
+        }
+    }
+
+    /**
+     * Answers the requests read from the input until it ends.
+     *
+     * @param in the stream to read requests from
+     * @param out the stream to write responses to
+     * @throws IOException if the requests could not be read, or the server was closed while serving
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        // a permit per request in flight, all permits are available again once all responses are written
+        Semaphore inFlight = new Semaphore(this.maxInFlight);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String request = line;
+                inFlight.acquire();
+                try {
+                    this.executor.execute(() -> {
+                        try {
+                            byte[] response = answer(request);
+                            synchronized (out) {
+                                out.write(response);
+                                out.flush();
+                            }
+                        } catch (IOException e) {
+                            // the client is gone, there is nobody left to tell
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    throw new IOException("The server was closed", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for requests in flight");
+        } finally {
+            try {
+                inFlight.acquire(this.maxInFlight);
+            } catch (InterruptedException e) {
+                // the server was closed, which drops the requests that weren't started yet
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Accepts connections on a Unix domain socket and answers their requests, until the server is closed.
+     *
+     * @param socketPath the path of the socket, which must not exist yet
+     * @throws IOException if the socket could not be opened
+     */
+    public void serve(Path socketPath) throws IOException {
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            this.socket = server;
+            try {
+                while (true) {
+                    SocketChannel connection;
+                    try {
+                        connection = server.accept();
+                    } catch (ClosedChannelException e) {
+                        return; // the server was closed
+                    }
+                    this.connections.execute(() -> {
+                        try (connection) {
+                            serve(Channels.newInputStream(connection), Channels.newOutputStream(connection));
+                        } catch (IOException e) {
+                            // the client is gone, others are not affected
+                        }
+                    });
+                }
+            } finally {
+                Files.deleteIfExists(socketPath);
+            }
+        }
+    }
+
+    private byte[] answer(String request) {
+        String[] tokens = request.trim().split("\\s+");
+        String id = tokens[0];
+        try {
+            if (tokens.length < 2) {
+                throw new IllegalArgumentException("Expected '<id> <seed> [<option>=<value>...]'");
+            }
+            long seed = parseNumber(tokens[1], "seed");
+            RandomSourceGeneratorSettings requestSettings = this.settings;
+            for (int i = 2; i < tokens.length; i++) {
+                requestSettings = override(requestSettings, tokens[i]);
+            }
+            GenerationLimits limits = requestSettings.limits();
+            if (limits.maxDepth() != GenerationLimits.NONE.maxDepth()
+                    && limits.maxNodes() == GenerationLimits.NONE.maxNodes() && requestSettings.sizeTarget() == null) {
+                throw new IllegalArgumentException("max-depth requires node-limit, target-nodes or target-bytes");
+            }
+            byte[] program = generate(seed, requestSettings);
+            byte[] header = "%s ok %d\n".formatted(id, program.length).getBytes(StandardCharsets.UTF_8);
+            byte[] response = new byte[header.length + program.length];
+            System.arraycopy(header, 0, response, 0, header.length);
+            System.arraycopy(program, 0, response, header.length, program.length);
+            return response;
+        } catch (Throwable e) {
+            // errors like a stack overflow only fail this request, the client still gets an answer
+            String message = (e.getMessage() == null ? e.toString() : e.getMessage()).replace('\n', ' ');
+            return "%s error %s\n".formatted(id, message).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private byte[] generate(long seed, RandomSourceGeneratorSettings settings) {
+        RandomSourceGenerator generator;
+        if (settings == this.settings) {
+            generator = this.generators.get();
+            generator.reset(seed);
+        } else {
+            generator = RandomProgramGenerator.createGenerator(seed, settings);
+        }
+        // requests are generated in parallel already, so their method bodies are generated in this thread
+        return RandomProgramGenerator.generateSource(generator).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static RandomSourceGeneratorSettings override(RandomSourceGeneratorSettings settings, String option) {
+        int separator = option.indexOf('=');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected <option>=<value>, was '%s'".formatted(option));
+        }
+        String key = option.substring(0, separator);
+        String value = option.substring(separator + 1);
+        double fieldToMethodRatio = settings.fieldToMethodRatio();
+        double arrayTypePercentage = settings.arrayTypePercentage();
+        int approximateNameLength = settings.approximateNameLength();
+        int maxTypeMembers = settings.maxTypeMembers();
+        int maxTypes = settings.maxTypes();
+        int maxStatementsPerBlock = settings.maxStatementsPerBlock();
+        SizeTarget sizeTarget = settings.sizeTarget();
+        GenerationLimits limits = settings.limits();
+        switch (key) {
+            case "field-to-method-ratio" -> fieldToMethodRatio = parseFraction(value, key);
+            case "array-type-percentage" -> arrayTypePercentage = parseFraction(value, key);
+            case "approx-name-length" -> approximateNameLength = Math.toIntExact(parseNumber(value, key));
+            case "type-member-limit" -> maxTypeMembers = Math.toIntExact(parseNumber(value, key));
+            case "type-limit" -> maxTypes = Math.toIntExact(parseNumber(value, key));
+            case "max-statements-per-block" -> maxStatementsPerBlock = Math.toIntExact(parseNumber(value, key));
+            case "target-nodes" -> sizeTarget = new SizeTarget(SizeTarget.Unit.NODES, parseNumber(value, key));
+            case "target-bytes" -> sizeTarget = new SizeTarget(SizeTarget.Unit.BYTES, parseNumber(value, key));
+            case "node-limit" -> limits = new GenerationLimits(parseNumber(value, key), limits.maxTime(),
+                    limits.maxDepth());
+            case "time-limit" -> limits = new GenerationLimits(limits.maxNodes(),
+                    Duration.ofMillis(parseNumber(value, key)), limits.maxDepth());
+            case "max-depth" -> limits = new GenerationLimits(limits.maxNodes(), limits.maxTime(),
+                    Math.toIntExact(parseNumber(value, key)));
+            default -> throw new IllegalArgumentException("Unknown option '%s'".formatted(key));
+        }
+        return new RandomSourceGeneratorSettings(
+                fieldToMethodRatio,
+                arrayTypePercentage,
+                approximateNameLength,
+                maxTypeMembers,
+                maxTypes,
+                settings.maxParameters(),
+                maxStatementsPerBlock,
+                settings.identList(),
+                settings.statementWeights(),
+                settings.primaryExpressionWeights(),
+                settings.operatorProbabilities(),
+                sizeTarget,
+                limits
+        );
+    }
+
+    private static long parseNumber(String value, String key) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid %s '%s'".formatted(key, value));
+        }
+    }
+
+    private static double parseFraction(String value, String key) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid %s '%s'".formatted(key, value));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.socket != null) {
+            this.socket.close();
+        }
+        this.connections.shutdownNow();
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.firmwehr.reforest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about generated programs: time and allocations per phase, how often each grammar
+ * production was sampled and histograms of nesting depths and output sizes.
+ * <p>
+ * All counters are {@link LongAdder}s, so one instance can be shared by all threads of a batch run
+ * without contention. Allocations are measured per thread, which requires a JVM supporting
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, otherwise they are reported
+ * as {@code -1}.
+ * <p>
+ * Phase times are wall times of the thread generating a program, so the phases of a program add up to at
+ * most its generation time. Method bodies generated in a pool count with the time the generating thread
+ * spends waiting for them, while their allocations are measured on the pool threads. In batch runs, the times
+ * of all programs are added up.
+ */
+public final class GenerationStats {
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = allocationBean();
+
+    public enum Phase {
+        WORD_LIST,
+        SKELETONS,
+        BODIES,
+        PRINTING,
+    }
+
+    private final LongAdder programs = new LongAdder();
+    private final LongAdder[] phaseNanos = adders(Phase.values().length);
+    private final LongAdder[] phaseAllocatedBytes = adders(Phase.values().length);
+    private final LongAdder[] statements = adders(StatementType.values().length);
+    private final LongAdder[] primaryExpressions = adders(PrimaryExpressionType.values().length);
+    private final LongAdder[] operators = adders(OperatorLevel.values().length);
+    private final Histogram blockDepths = Histogram.linear(64);
+    private final Histogram expressionDepths = Histogram.linear(64);
+    private final Histogram outputBytes = Histogram.exponential();
+
+    /**
+     * {@return the bytes allocated by the current thread so far, or {@code -1} if not supported}
+     */
+    public static long allocatedBytes() {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds the time and allocations since the given start values to a phase. The start values must
+     * have been taken on the current thread, by {@link System#nanoTime()} and {@link #allocatedBytes()}.
+     *
+     * @param phase the phase that ended
+     * @param startNanos the time the phase started at
+     * @param startAllocatedBytes the allocated bytes when the phase started
+     */
+    public void endPhase(Phase phase, long startNanos, long startAllocatedBytes) {
+        addPhaseTime(phase, startNanos);
+        addPhaseAllocations(phase, startAllocatedBytes);
+    }
+
+    /**
+     * Adds the time since the given start time to a phase, for phases of which the allocations are
+     * measured on other threads.
+     *
+     * @param phase the phase that ended
+     * @param startNanos the time the phase started at, by {@link System#nanoTime()}
+     */
+    public void addPhaseTime(Phase phase, long startNanos) {
+        this.phaseNanos[phase.ordinal()].add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Adds the allocations since the given start value to a phase, without adding to its time.
+     *
+     * @param phase the phase that ended
+     * @param startAllocatedBytes the allocated bytes of the current thread when the phase started
+     */
+    public void addPhaseAllocations(Phase phase, long startAllocatedBytes) {
+        if (startAllocatedBytes >= 0) {
+            this.phaseAllocatedBytes[phase.ordinal()].add(allocatedBytes() - startAllocatedBytes);
+        }
+    }
+
+    public void program(long outputBytes) {
+        this.programs.increment();
+        this.outputBytes.record(outputBytes);
+    }
+
+    public void statement(StatementType type) {
+        this.statements[type.ordinal()].increment();
+    }
+
+    public void primaryExpression(PrimaryExpressionType type) {
+        this.primaryExpressions[type.ordinal()].increment();
+    }
+
+    public void operator(OperatorLevel level) {
+        this.operators[level.ordinal()].increment();
+    }
+
+    public void block(int depth) {
+        this.blockDepths.record(depth);
+    }
+
+    public void expression(int depth) {
+        this.expressionDepths.record(depth);
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n  \"programs\": " + this.programs.sum() + ",\n");
+        out.write("  \"phases\": {");
+        boolean supported = THREAD_BEAN != null;
+        for (Phase phase : Phase.values()) {
+            out.write(phase.ordinal() == 0 ? "\n" : ",\n");
+            out.write("    \"" + key(phase) + "\": {\"nanos\": " + this.phaseNanos[phase.ordinal()].sum()
+                    + ", \"allocated_bytes\": " + (supported ? this.phaseAllocatedBytes[phase.ordinal()].sum() : -1)
+                    + "}");
+        }
+        out.write("\n  },\n");
+        writeCounters(out, "statements", StatementType.values(), this.statements);
+        writeCounters(out, "primary_expressions", PrimaryExpressionType.values(), this.primaryExpressions);
+        writeCounters(out, "operators", OperatorLevel.values(), this.operators);
+        out.write("  \"block_depth\": ");
+        this.blockDepths.writeJson(out);
+        out.write(",\n  \"expression_depth\": ");
+        this.expressionDepths.writeJson(out);
+        out.write(",\n  \"output_bytes\": ");
+        this.outputBytes.writeJson(out);
+        out.write("\n}\n");
+    }
+
+    private static void writeCounters(Writer out, String name, Enum<?>[] keys, LongAdder[] counters)
+            throws IOException {
+        out.write("  \"" + name + "\": {");
+        for (Enum<?> key : keys) {
+            out.write(key.ordinal() == 0 ? "" : ", ");
+            out.write("\"" + key(key) + "\": " + counters[key.ordinal()].sum());
+        }
+        out.write("},\n");
+    }
+
+    private static String key(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean allocationBean
+                && allocationBean.isThreadAllocatedMemorySupported()
+                && allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return allocationBean;
+        }
+        return null;
+    }
+
+    /**
+     * Counts values in buckets, either one bucket per value up to a limit, or one bucket per power of two.
+     * Written to JSON as a list of the non-empty buckets with their smallest value.
+     */
+    private static final class Histogram {
+        private final LongAdder[] buckets;
+        private final boolean exponential;
+
+        private Histogram(int buckets, boolean exponential) {
+            this.buckets = adders(buckets);
+            this.exponential = exponential;
+        }
+
+        static Histogram linear(int buckets) {
+            return new Histogram(buckets, false);
+        }
+
+        static Histogram exponential() {
+            return new Histogram(Long.SIZE + 1, true);
+        }
+
+        void record(long value) {
+            int bucket = this.exponential
+                    ? Long.SIZE - Long.numberOfLeadingZeros(Math.max(value, 0))
+                    : (int) Math.max(0, Math.min(value, this.buckets.length - 1));
+            this.buckets[bucket].increment();
+        }
+
+        void writeJson(Writer out) throws IOException {
+            out.write('[');
+            boolean first = true;
+            for (int i = 0; i < this.buckets.length; i++) {
+                long count = this.buckets[i].sum();
+                if (count == 0) {
+                    continue;
+                }
+                out.write(first ? "" : ", ");
+                first = false;
+                long min = this.exponential && i > 0 ? 1L << (i - 1) : i;
+                out.write("{\"min\": " + min + ", \"count\": " + count + "}");
+            }
+            out.write(']');
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.WeightedPrimaryExpressionType;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.WeightedStatementType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The default weights of the grammar productions, and overrides for them read from a properties file.
+ * Keys are the lower case names of the productions, prefixed with their kind:
+ * <pre>
+ * statement.if = 0.1
+ * primary.method_invocation = 0.1
+ * operator.additive = 0.2
+ * </pre>
+ * Statement and primary weights are relative to the other weights of the same kind, operator weights
+ * are the probability of generating an operator at that level, at least 0 and below 1.
+ */
+record GrammarWeights(
+        List<WeightedStatementType> statementWeights,
+        List<WeightedPrimaryExpressionType> primaryExpressionWeights,
+        Map<OperatorLevel, Double> operatorProbabilities
+) {
+    static final GrammarWeights DEFAULT = new GrammarWeights(
+            List.of(
+                    new WeightedStatementType(0.05, StatementType.EMPTY),
+                    new WeightedStatementType(0.2, StatementType.LOCAL_VARIABLE_DECLARATION),
+                    new WeightedStatementType(0.3, StatementType.EXPRESSION),
+                    new WeightedStatementType(0.1, StatementType.IF),
+                    new WeightedStatementType(0.08, StatementType.WHILE),
+                    new WeightedStatementType(0.06, StatementType.RETURN),
+                    new WeightedStatementType(0.07, StatementType.BLOCK)
+            ),
+            List.of(
+                    new WeightedPrimaryExpressionType(0.3, PrimaryExpressionType.LITERAL),
+                    new WeightedPrimaryExpressionType(0.1, PrimaryExpressionType.NEW_OBJECT),
+                    new WeightedPrimaryExpressionType(0.1, PrimaryExpressionType.NEW_ARRAY),
+                    new WeightedPrimaryExpressionType(0.2, PrimaryExpressionType.VARIABLE),
+                    new WeightedPrimaryExpressionType(0.1, PrimaryExpressionType.METHOD_INVOCATION),
+                    new WeightedPrimaryExpressionType(0.1, PrimaryExpressionType.THIS),
+                    new WeightedPrimaryExpressionType(0.1, PrimaryExpressionType.PARENTHESIZED)
+            ),
+            Map.of(
+                    OperatorLevel.LOGICAL_OR, 0.15,
+                    OperatorLevel.LOGICAL_AND, 0.09,
+                    OperatorLevel.EQUALITY, 0.08,
+                    OperatorLevel.RELATIONAL, 0.15,
+                    OperatorLevel.ADDITIVE, 0.2,
+                    OperatorLevel.MULTIPLICATIVE, 0.1,
+                    OperatorLevel.UNARY, 0.2
+            )
+    );
+
+    GrammarWeights {
+        // a probability of 1 at a recursive level would never stop generating operators
+        operatorProbabilities.forEach((level, probability) -> {
+            if (!(probability >= 0 && probability < 1)) {
+                throw new IllegalArgumentException("Invalid probability %s for operator.%s, must be in [0, 1)"
+                        .formatted(probability, level.name().toLowerCase(Locale.ROOT)));
+            }
+        });
+    }
+
+    /**
+     * Reads a properties file and overrides the weights given in it.
+     *
+     * @param path the properties file to read
+     * @return the default weights with the overrides applied
+     * @throws IOException if the file could not be read
+     */
+    GrammarWeights withOverrides(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        List<WeightedStatementType> statements = new ArrayList<>();
+        for (WeightedStatementType weight : this.statementWeights) {
+            statements.add(new WeightedStatementType(
+                    override(properties, path, "statement.", weight.type(), weight.weight()),
+                    weight.type()
+            ));
+        }
+        List<WeightedPrimaryExpressionType> primaries = new ArrayList<>();
+        for (WeightedPrimaryExpressionType weight : this.primaryExpressionWeights) {
+            primaries.add(new WeightedPrimaryExpressionType(
+                    override(properties, path, "primary.", weight.type(), weight.weight()),
+                    weight.type()
+            ));
+        }
+        Map<OperatorLevel, Double> operators = new EnumMap<>(OperatorLevel.class);
+        this.operatorProbabilities.forEach((level, probability) ->
+                operators.put(level, override(properties, path, "operator.", level, probability)));
+        // all known keys were removed by now
+        if (!properties.isEmpty()) {
+            throw new IllegalArgumentException("Unknown grammar weights %s in '%s'"
+                    .formatted(properties.stringPropertyNames(), path));
+        }
+        return new GrammarWeights(statements, primaries, operators);
+    }
+
+    private static double override(Properties properties, Path path, String prefix, Enum<?> production,
+                                   double weight) {
+        String key = prefix + production.name().toLowerCase(Locale.ROOT);
+        Object value = properties.remove(key);
+        if (value == null) {
+            return weight;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid weight '%s' for %s in '%s'".formatted(value, key, path));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.firmwehr.reforest;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks that generated programs are valid Java by compiling them in memory with javac. Errors are grouped by
+ * the production that generated the node they are reported at, see {@link SourceMap}.
+ * <p>
+ * One compiler is shared by all threads. javac's file manager isn't thread-safe, so each thread reuses its
+ * own, forwarding to the platform classes and discarding the class files.
+ */
+public class JavaValidator {
+    private static final List<String> OPTIONS = List.of("-proc:none", "-Xlint:none", "-nowarn");
+
+    private final RandomSourceGeneratorSettings settings;
+    private final int threads;
+    private final JavaCompiler compiler;
+
+    private final LongAdder validPrograms = new LongAdder();
+    private final Map<String, LongAdder> errorCounts = new ConcurrentHashMap<>();
+    private final Map<String, String> errorExamples = new ConcurrentHashMap<>();
+
+    public JavaValidator(RandomSourceGeneratorSettings settings, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The amount of threads must be positive, was %d".formatted(threads));
+        }
+        this.settings = settings;
+        this.threads = threads;
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (this.compiler == null) {
+            throw new IllegalStateException("No Java compiler available, validation needs to run on a JDK");
+        }
+    }
+
+    /**
+     * Validates the programs with the seeds {@code firstSeed} to {@code firstSeed + count - 1}, then prints
+     * the validity rate and the errors by production.
+     *
+     * @param firstSeed the seed of the first program
+     * @param count the amount of programs to validate
+     * @param report the stream to print the report to
+     * @throws IOException if a file manager could not be closed
+     */
+    public void run(long firstSeed, long count, PrintStream report) throws IOException {
+        if (count <= 0) {
+            throw new IllegalArgumentException("The count must be positive, was %d".formatted(count));
+        }
+        AtomicLong nextIndex = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(this.threads, count); i++) {
+                workers.add(executor.submit(() -> {
+                    try (DiscardingFileManager fileManager = new DiscardingFileManager(
+                            this.compiler.getStandardFileManager(null, Locale.ROOT, StandardCharsets.UTF_8))) {
+                        // the generator keeps per-program state, which is reset for every program
+                        RandomSourceGenerator generator = RandomProgramGenerator.createGenerator(firstSeed,
+                                this.settings);
+                        long index;
+                        while ((index = nextIndex.getAndIncrement()) < count) {
+                            generator.reset(firstSeed + index);
+                            validate(generator, fileManager);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating programs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Failed to validate programs", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        printReport(count, report);
+    }
+
+    private void validate(RandomSourceGenerator generator, DiscardingFileManager fileManager) {
+        SourceMap sourceMap = new SourceMap();
+        // programs are validated in parallel already, so their method bodies are generated in this thread
+        String program = RandomProgramGenerator.generateSource(generator, sourceMap, null);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaFileObject source = new SourceFile(program);
+        boolean valid = this.compiler.getTask(null, fileManager, diagnostics, OPTIONS, null, List.of(source)).call();
+        if (valid) {
+            this.validPrograms.increment();
+        }
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            // javac reports the span of the offending tree, which matches the span of the generated node
+            long start = diagnostic.getStartPosition();
+            String production = start == Diagnostic.NOPOS
+                    ? null
+                    : sourceMap.productionAt(start, Math.max(diagnostic.getEndPosition(), start + 1));
+            String key = (production == null ? "unknown" : production) + " " + diagnostic.getCode();
+            this.errorCounts.computeIfAbsent(key, k -> new LongAdder()).increment();
+            this.errorExamples.putIfAbsent(key, diagnostic.getMessage(Locale.ROOT).lines().findFirst().orElse(""));
+        }
+    }
+
+    private void printReport(long count, PrintStream report) {
+        long valid = this.validPrograms.sum();
+        report.printf(Locale.ROOT, "%d of %d programs are valid (%.1f%%)%n", valid, count, 100.0 * valid / count);
+        if (this.errorCounts.isEmpty()) {
+            return;
+        }
+        report.println("Errors by production:");
+        this.errorCounts.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .forEach(e -> report.printf("%8d %s: %s%n", e.getValue().sum(), e.getKey(), this.errorExamples.get(e.getKey())));
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String source) {
+            super(URI.create("string:///Program.java"), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return this.source;
+        }
+    }
+
+    /**
+     * Looks up the platform classes as usual, but never writes class files.
+     */
+    private static final class DiscardingFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        DiscardingFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            URI uri = URI.create("discarded:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
+            };
+        }
+    }
+}
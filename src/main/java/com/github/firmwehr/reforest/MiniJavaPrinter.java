@@ -0,0 +1,419 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.ThisAccess;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperator;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.MethodDeclaration;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.EmptyStatement;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.util.CountingWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static com.github.firmwehr.reforest.model.Expression.ASSIGNMENT_PRECEDENCE;
+import static com.github.firmwehr.reforest.model.Expression.POSTFIX_PRECEDENCE;
+import static com.github.firmwehr.reforest.model.Expression.UNARY_PRECEDENCE;
+
+/**
+ * Prints generated programs directly to a writer, without materializing the source code as a string.
+ * As a {@link ProgramSink} it prints each method as soon as it was generated.
+ * <p>
+ * Parentheses are only printed where the operator precedence requires them. Statements and expressions are
+ * printed with an explicit work stack instead of recursion, so arbitrarily deep nesting can be printed, see
+ * {@link RandomSourceGeneratorSettings.GenerationLimits#maxDepth()}.
+ */
+public class MiniJavaPrinter implements ProgramSink {
+    private static final char[] INDENTATION = "                                                                ".toCharArray();
+    private static final int INDENTATION_WIDTH = 4;
+    // deeper code isn't indented further, so deeply nested programs only grow linearly with their depth
+    private static final int MAX_INDENTATION_DEPTH = 64;
+
+    private final CountingWriter out;
+    // null unless positions are recorded
+    private final SourceMap sourceMap;
+    private int depth;
+    private boolean firstMember;
+    private long classStart;
+    // what is left to print of the current method body: strings, statements, expressions preceded by their
+    // minimum precedence, actions and the spans of nodes to record once they are printed
+    private final Deque<Object> work = new ArrayDeque<>();
+
+    public MiniJavaPrinter(Writer out) {
+        this(out, null);
+    }
+
+    /**
+     * Creates a printer recording the position of every printed node.
+     *
+     * @param out the writer to print to
+     * @param sourceMap the source map to add the printed nodes to
+     */
+    public MiniJavaPrinter(Writer out, SourceMap sourceMap) {
+        this.out = new CountingWriter(out);
+        this.sourceMap = sourceMap;
+    }
+
+    public void printProgram(List<ClassDeclaration> classes) throws IOException {
+        for (ClassDeclaration classDeclaration : classes) {
+            printClass(classDeclaration);
+        }
+    }
+
+    public void printClass(ClassDeclaration classDeclaration) throws IOException {
+        startClass(classDeclaration.skeleton());
+        for (MethodDeclaration method : classDeclaration.methods()) {
+            method(method.method(), method.body());
+        }
+        endClass(classDeclaration.skeleton());
+    }
+
+    @Override
+    public void startClass(ClassSkeleton skeleton) throws IOException {
+        this.classStart = this.out.count();
+        this.out.write("class ");
+        this.out.write(skeleton.name());
+        this.out.write(" {\n");
+        this.depth++;
+        this.firstMember = true;
+        for (Field field : skeleton.fields()) {
+            separateMember();
+            printField(field);
+        }
+    }
+
+    @Override
+    public void method(Method method, Block body) throws IOException {
+        separateMember();
+        printMethod(method, body);
+    }
+
+    @Override
+    public void endClass(ClassSkeleton skeleton) throws IOException {
+        this.depth--;
+        this.out.write("}\n");
+        record(this.classStart, "class");
+    }
+
+    @Override
+    public long writtenChars() {
+        return this.out.count();
+    }
+
+    private void separateMember() throws IOException {
+        if (!this.firstMember) {
+            this.out.write('\n');
+        }
+        this.firstMember = false;
+    }
+
+    private void printField(Field field) throws IOException {
+        indent();
+        long start = this.out.count();
+        this.out.write("public ");
+        printType(field.type());
+        this.out.write(' ');
+        this.out.write(field.name());
+        this.out.write(';');
+        record(start, "field");
+        this.out.write('\n');
+    }
+
+    private void printMethod(Method method, Block body) throws IOException {
+        indent();
+        long start = this.out.count();
+        this.out.write("public ");
+        if (method.isStatic()) {
+            this.out.write("static ");
+        }
+        printType(method.returnType());
+        this.out.write(' ');
+        this.out.write(method.name());
+        this.out.write('(');
+        boolean first = true;
+        for (Parameter parameter : method.parameters()) {
+            if (!first) {
+                this.out.write(", ");
+            }
+            first = false;
+            printType(parameter.type());
+            this.out.write(' ');
+            this.out.write(parameter.name());
+        }
+        this.out.write(')');
+        first = true;
+        for (Type thrownType : method.thrownTypes()) {
+            this.out.write(first ? " throws " : ", ");
+            first = false;
+            printType(thrownType);
+        }
+        this.out.write(' ');
+        printBlock(body);
+        record(start, "method");
+        this.out.write('\n');
+    }
+
+    private void printBlock(Block block) throws IOException {
+        pushBlock(block);
+        while (!this.work.isEmpty()) {
+            Object item = this.work.pop();
+            if (item instanceof String text) {
+                this.out.write(text);
+            } else if (item instanceof Statement statement) {
+                printStatement(statement);
+            } else if (item instanceof Integer minPrecedence) {
+                printExpression((Expression) this.work.pop(), minPrecedence);
+            } else if (item instanceof Action action) {
+                switch (action) {
+                    case INDENT -> indent();
+                    case DEEPER -> this.depth++;
+                    case SHALLOWER -> this.depth--;
+                }
+            } else if (item instanceof Span span) {
+                this.sourceMap.add(span.start(), this.out.count(), span.production());
+            } else {
+                throw new IllegalStateException("Unexpected work item " + item);
+            }
+        }
+    }
+
+    /*
+     * The methods below print the start of a node right away and push what follows onto the work stack,
+     * in reverse order, so it is printed once the nodes pushed after it were printed completely.
+     */
+
+    private void pushBlock(Block block) throws IOException {
+        this.out.write("{\n");
+        this.depth++;
+        this.work.push("}");
+        this.work.push(Action.INDENT);
+        this.work.push(Action.SHALLOWER);
+        List<Statement> statements = block.statements();
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            this.work.push("\n");
+            this.work.push(statements.get(i));
+            this.work.push(Action.INDENT);
+        }
+    }
+
+    private void pushExpression(Expression expression, int minPrecedence) {
+        this.work.push(expression);
+        this.work.push(minPrecedence);
+    }
+
+    private void printStatement(Statement statement) throws IOException {
+        if (this.sourceMap != null) {
+            this.work.push(new Span(this.out.count(), SourceMap.production(statement)));
+        }
+        if (statement instanceof EmptyStatement) {
+            this.out.write(';');
+        } else if (statement instanceof Block block) {
+            pushBlock(block);
+        } else if (statement instanceof LocalVariableDeclaration declaration) {
+            printType(declaration.variable().type());
+            this.out.write(' ');
+            this.out.write(declaration.variable().name());
+            if (declaration.initializer() != null) {
+                this.out.write(" = ");
+                this.work.push(";");
+                pushExpression(declaration.initializer(), ASSIGNMENT_PRECEDENCE);
+            } else {
+                this.out.write(';');
+            }
+        } else if (statement instanceof IfStatement ifStatement) {
+            printIf(ifStatement);
+        } else if (statement instanceof WhileStatement whileStatement) {
+            this.out.write("while (");
+            this.work.push(whileStatement.body());
+            this.work.push(") ");
+            pushExpression(whileStatement.condition(), ASSIGNMENT_PRECEDENCE);
+        } else if (statement instanceof ReturnStatement returnStatement) {
+            if (returnStatement.value() == null) {
+                this.out.write("return;");
+            } else {
+                this.out.write("return ");
+                this.work.push(";");
+                pushExpression(returnStatement.value(), ASSIGNMENT_PRECEDENCE);
+            }
+        } else if (statement instanceof ExpressionStatement expressionStatement) {
+            this.work.push(";");
+            pushExpression(expressionStatement.expression(), ASSIGNMENT_PRECEDENCE);
+        } else {
+            throw new IllegalArgumentException("Unsupported statement " + statement);
+        }
+    }
+
+    private void printIf(IfStatement ifStatement) throws IOException {
+        this.out.write("if (");
+        Statement thenStatement = ifStatement.thenStatement();
+        Statement elseStatement = ifStatement.elseStatement();
+        if (elseStatement != null) {
+            this.work.push(elseStatement);
+            this.work.push(" else ");
+        }
+        // an else would bind to a nested if without else, keep the structure of the model
+        if (elseStatement != null && thenStatement instanceof IfStatement nested && nested.elseStatement() == null) {
+            this.work.push("}");
+            this.work.push(Action.INDENT);
+            this.work.push(Action.SHALLOWER);
+            this.work.push("\n");
+            this.work.push(thenStatement);
+            this.work.push(Action.INDENT);
+            this.work.push(Action.DEEPER);
+            this.work.push("{\n");
+        } else {
+            this.work.push(thenStatement);
+        }
+        this.work.push(") ");
+        pushExpression(ifStatement.condition(), ASSIGNMENT_PRECEDENCE);
+    }
+
+    private void printExpression(Expression expression, int minPrecedence) throws IOException {
+        if (this.sourceMap != null) {
+            this.work.push(new Span(this.out.count(), SourceMap.production(expression)));
+        }
+        if (precedence(expression) < minPrecedence) {
+            this.out.write('(');
+            this.work.push(")");
+        }
+        if (expression instanceof IntegerLiteral literal) {
+            this.out.write(Integer.toString(literal.value()));
+        } else if (expression instanceof BooleanLiteral literal) {
+            this.out.write(literal.value() ? "true" : "false");
+        } else if (expression instanceof NullLiteral) {
+            this.out.write("null");
+        } else if (expression instanceof Assignment assignment) {
+            pushExpression(assignment.value(), ASSIGNMENT_PRECEDENCE);
+            this.work.push(" = ");
+            pushExpression(assignment.target(), POSTFIX_PRECEDENCE);
+        } else if (expression instanceof BinaryOperation operation) {
+            int precedence = operation.operator().precedence();
+            // all binary operators are left associative
+            pushExpression(operation.right(), precedence + 1);
+            this.work.push(" ");
+            this.work.push(operation.operator().symbol());
+            this.work.push(" ");
+            pushExpression(operation.left(), precedence);
+        } else if (expression instanceof UnaryOperation operation) {
+            this.out.write(operation.operator().symbol());
+            // avoid printing a decrement operator
+            boolean negative = operation.operator() == UnaryOperator.NEG && startsWithMinus(operation.operand());
+            pushExpression(operation.operand(), negative ? POSTFIX_PRECEDENCE + 1 : UNARY_PRECEDENCE);
+        } else if (expression instanceof ArrayAccess arrayAccess) {
+            this.work.push("]");
+            pushExpression(arrayAccess.index(), ASSIGNMENT_PRECEDENCE);
+            this.work.push("[");
+            // new int[1][0] would be parsed as two-dimensional array creation
+            pushExpression(arrayAccess.array(), arrayAccess.array() instanceof NewArray
+                    ? POSTFIX_PRECEDENCE + 1
+                    : POSTFIX_PRECEDENCE);
+        } else if (expression instanceof VariableAccess access) {
+            if (access.variable() instanceof Field) {
+                this.out.write("this.");
+            }
+            this.out.write(access.variable().name());
+        } else if (expression instanceof MethodInvocation invocation) {
+            this.out.write(invocation.method().name());
+            this.out.write('(');
+            this.work.push(")");
+            List<Expression> arguments = invocation.arguments();
+            for (int i = arguments.size() - 1; i >= 0; i--) {
+                pushExpression(arguments.get(i), ASSIGNMENT_PRECEDENCE);
+                if (i > 0) {
+                    this.work.push(", ");
+                }
+            }
+        } else if (expression instanceof NewObject newObject) {
+            this.out.write("new ");
+            printType(newObject.type());
+            this.out.write("()");
+        } else if (expression instanceof NewArray newArray) {
+            this.out.write("new ");
+            this.out.write(newArray.type().name());
+            this.out.write('[');
+            for (int i = 1; i < newArray.type().dimensions(); i++) {
+                this.work.push("[]");
+            }
+            this.work.push("]");
+            pushExpression(newArray.size(), ASSIGNMENT_PRECEDENCE);
+        } else if (expression instanceof ThisAccess) {
+            this.out.write("this");
+        } else {
+            throw new IllegalArgumentException("Unsupported expression " + expression);
+        }
+    }
+
+    private void record(long start, String production) {
+        if (this.sourceMap != null) {
+            this.sourceMap.add(start, this.out.count(), production);
+        }
+    }
+
+    private void printType(Type type) throws IOException {
+        this.out.write(type.name());
+        for (int i = 0; i < type.dimensions(); i++) {
+            this.out.write("[]");
+        }
+    }
+
+    private void indent() throws IOException {
+        int width = Math.min(this.depth, MAX_INDENTATION_DEPTH) * INDENTATION_WIDTH;
+        while (width > 0) {
+            int chunk = Math.min(width, INDENTATION.length);
+            this.out.write(INDENTATION, 0, chunk);
+            width -= chunk;
+        }
+    }
+
+    private static boolean startsWithMinus(Expression expression) {
+        return expression instanceof IntegerLiteral literal && literal.value() < 0
+                || expression instanceof UnaryOperation operation && operation.operator() == UnaryOperator.NEG;
+    }
+
+    private static int precedence(Expression expression) {
+        if (expression instanceof Assignment) {
+            return ASSIGNMENT_PRECEDENCE;
+        } else if (expression instanceof BinaryOperation operation) {
+            return operation.operator().precedence();
+        } else if (expression instanceof UnaryOperation
+                || expression instanceof IntegerLiteral literal && literal.value() < 0) {
+            return UNARY_PRECEDENCE;
+        }
+        return POSTFIX_PRECEDENCE;
+    }
+
+    private enum Action {
+        INDENT,
+        DEEPER,
+        SHALLOWER,
+    }
+
+    private record Span(long start, String production) {
+    }
+}
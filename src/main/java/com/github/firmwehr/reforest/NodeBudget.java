@@ -0,0 +1,59 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.GenerationLimits;
+
+/**
+ * Bounds the work spent on a single method body, see {@link GenerationLimits}.
+ * <p>
+ * Every generated statement and expression node spends one node. Once the nodes are used up or the deadline
+ * passed, the generator only completes what it already started, with literals and empty statements, so the
+ * remaining work is bounded by the nesting at that point. The clock is only read every few nodes, as that is
+ * much more expensive than counting.
+ */
+final class NodeBudget {
+    private static final int CLOCK_INTERVAL = 256;
+
+    private long remainingNodes;
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private int untilClock = CLOCK_INTERVAL;
+    private boolean exhausted;
+
+    /**
+     * @param nodes the amount of nodes the body may use
+     * @param hasDeadline whether the body has to be finished by the deadline
+     * @param deadlineNanos the deadline, in terms of {@link System#nanoTime()}
+     */
+    NodeBudget(long nodes, boolean hasDeadline, long deadlineNanos) {
+        this.remainingNodes = nodes;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Spends a node, if there is one left.
+     *
+     * @return {@code false} if the budget is exhausted, and a fallback should be generated instead
+     */
+    boolean spend() {
+        if (this.exhausted) {
+            return false;
+        }
+        if (--this.remainingNodes < 0
+                || this.hasDeadline && --this.untilClock == 0 && isPastDeadline()) {
+            this.exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    boolean isExhausted() {
+        return this.exhausted;
+    }
+
+    private boolean isPastDeadline() {
+        this.untilClock = CLOCK_INTERVAL;
+        // compared by difference, nanoTime may overflow
+        return System.nanoTime() - this.deadlineNanos >= 0;
+    }
+}
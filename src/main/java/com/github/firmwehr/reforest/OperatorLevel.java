@@ -0,0 +1,15 @@
+package com.github.firmwehr.reforest;
+
+/**
+ * The levels of the expression grammar, from the lowest to the highest precedence. At each level an
+ * operator is generated with a configured probability, otherwise generation descends to the next level.
+ */
+public enum OperatorLevel {
+    LOGICAL_OR,
+    LOGICAL_AND,
+    EQUALITY,
+    RELATIONAL,
+    ADDITIVE,
+    MULTIPLICATIVE,
+    UNARY,
+}
@@ -18,9 +18,30 @@ public interface Options {
             names = {"--output", "-o"},
             paramLabel = "PATH",
             converter = NonExistentFileConverter.class,
-            description = "The path of the file to write to"
+            description = "The path of the file to write to. Batch mode writes to --output-dir or --archive instead"
     )
-    Path outputPath();
+    Optional<Path> outputPath();
+
+    @Option(
+            names = {"--output-dir", "-d"},
+            paramLabel = "PATH",
+            description = "The directory to write the programs of a batch run to"
+    )
+    Optional<Path> outputDirectory();
+
+    @Option(
+            names = {"--count", "-n"},
+            paramLabel = "INTEGER",
+            description = "The amount of programs to generate. Programs use consecutive seeds, starting at the given seed"
+    )
+    OptionalInt count();
+
+    @Option(
+            names = {"--threads", "-t"},
+            paramLabel = "INTEGER",
+            description = "The amount of threads to generate programs, or method bodies of a single program, in. Defaults to the number of available processors"
+    )
+    OptionalInt threads();
 
     @Option(
             names = {"--seed", "-s"},
@@ -33,7 +54,7 @@ public interface Options {
             names = {"--words", "-w"},
             paramLabel = "PATH",
             converter = ExistingFileConverter.class,
-            description = "The path to the word list file to use"
+            description = "The path to the word list file to use, either a text file or a compiled word list"
     )
     Optional<Path> wordList();
 
@@ -79,6 +100,99 @@ public interface Options {
     )
     OptionalInt statementsPerBlock();
 
+    @Option(
+            names = "--target-nodes",
+            paramLabel = "NODES",
+            description = "Generate programs of about this many AST nodes, instead of using the type limit"
+    )
+    OptionalLong targetNodes();
+
+    @Option(
+            names = "--target-bytes",
+            paramLabel = "BYTES",
+            description = "Generate programs of about this many bytes, instead of using the type limit"
+    )
+    OptionalLong targetBytes();
+
+    @Option(
+            names = "--node-limit",
+            paramLabel = "NODES",
+            description = "Complete method bodies with literals and empty statements once the program has this many "
+                    + "statement and expression nodes, shared evenly by all method bodies"
+    )
+    OptionalLong nodeLimit();
+
+    @Option(
+            names = "--time-limit",
+            paramLabel = "MILLIS",
+            description = "Complete method bodies with literals and empty statements once generating the program took "
+                    + "this long. Programs cut short depend on the speed of the machine"
+    )
+    OptionalLong timeLimit();
+
+    @Option(
+            names = "--max-depth",
+            paramLabel = "DEPTH",
+            description = "Generate method bodies with a work stack instead of recursion, nesting statements and "
+                    + "expressions up to the given depth. Requires --node-limit or a size target, as programs grow "
+                    + "exponentially with the depth otherwise"
+    )
+    OptionalInt maxDepth();
+
+    @Option(
+            names = "--grammar",
+            paramLabel = "PATH",
+            converter = ExistingFileConverter.class,
+            description = "A properties file overriding the weights of grammar productions, e.g. statement.if=0.1"
+    )
+    Optional<Path> grammarWeights();
+
+    @Option(
+            names = "--stats",
+            paramLabel = "PATH",
+            description = "Write statistics about the generation as JSON to the given file"
+    )
+    Optional<Path> statsPath();
+
+    @Option(
+            names = "--only",
+            paramLabel = "CLASS.METHOD",
+            description = "Only regenerate the given method of the program, as printed in the full program. Not supported in batch mode"
+    )
+    Optional<String> onlyMethod();
+
+    @Option(
+            names = "--archive",
+            paramLabel = "PATH",
+            converter = NonExistentFileConverter.class,
+            description = "Write the programs of a batch run to a single compressed corpus archive instead of "
+                    + "--output-dir, see the cat and extract commands"
+    )
+    Optional<Path> archivePath();
+
+    @Option(
+            names = "--dedup",
+            paramLabel = "program|method",
+            converter = DeduplicationConverter.class,
+            description = "Skip programs in batch mode that are structurally equal to one generated before, ignoring "
+                    + "names and literal values. With 'method', skip programs of which every method was seen before"
+    )
+    Optional<BatchGenerator.Deduplication> deduplication();
+
+    @Option(
+            names = "--dedup-store",
+            paramLabel = "PATH",
+            description = "Keep the hashes of generated programs in the given file, so --dedup also skips programs "
+                    + "generated by earlier runs"
+    )
+    Optional<Path> deduplicationStore();
+
+    @Option(
+            names = "--spoon",
+            description = "Print the program with spoon's pretty printer instead. Not supported in batch mode"
+    )
+    boolean spoon();
+
     class ExistingFileConverter extends StringConverter<Path> {
 
         @Override
@@ -96,6 +210,17 @@ public interface Options {
         }
     }
 
+    class DeduplicationConverter extends StringConverter<BatchGenerator.Deduplication> {
+        @Override
+        protected BatchGenerator.Deduplication convert(String token) {
+            return switch (token) {
+                case "program" -> BatchGenerator.Deduplication.PROGRAM;
+                case "method" -> BatchGenerator.Deduplication.METHOD;
+                default -> throw new IllegalArgumentException("Expected program or method, was '%s'".formatted(token));
+            };
+        }
+    }
+
     class NonExistentFileConverter extends StringConverter<Path> {
         @Override
         protected Path convert(String token) throws Exception {
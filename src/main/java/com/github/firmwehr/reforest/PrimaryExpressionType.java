@@ -0,0 +1,15 @@
+package com.github.firmwehr.reforest;
+
+/**
+ * The productions of primary expressions. If a production can't produce the requested type, the next
+ * applicable one in declaration order is used instead.
+ */
+public enum PrimaryExpressionType {
+    LITERAL,
+    NEW_OBJECT,
+    NEW_ARRAY,
+    VARIABLE,
+    METHOD_INVOCATION,
+    THIS,
+    PARENTHESIZED,
+}
@@ -0,0 +1,80 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.WeightedPrimaryExpressionType;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.WeightedStatementType;
+import com.github.firmwehr.reforest.util.AliasTable;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * The weights of the grammar productions from the settings, compiled to primitive tables that are
+ * sampled in constant time. Every sample is counted in the stats, including samples the generator
+ * rejects and samples again.
+ */
+final class ProductionTable {
+    private final StatementType[] statementTypes;
+    private final AliasTable statements;
+    private final PrimaryExpressionType[] primaryExpressionTypes;
+    private final AliasTable primaryExpressions;
+    private final double[] operatorProbabilities;
+    private final GenerationStats stats;
+
+    ProductionTable(RandomSourceGeneratorSettings settings, GenerationStats stats) {
+        this.stats = stats;
+        List<WeightedStatementType> statementWeights = settings.statementWeights();
+        this.statementTypes = new StatementType[statementWeights.size()];
+        double[] weights = new double[statementWeights.size()];
+        for (int i = 0; i < weights.length; i++) {
+            this.statementTypes[i] = statementWeights.get(i).type();
+            weights[i] = statementWeights.get(i).weight();
+        }
+        this.statements = new AliasTable(weights);
+
+        List<WeightedPrimaryExpressionType> primaryWeights = settings.primaryExpressionWeights();
+        this.primaryExpressionTypes = new PrimaryExpressionType[primaryWeights.size()];
+        weights = new double[primaryWeights.size()];
+        for (int i = 0; i < weights.length; i++) {
+            this.primaryExpressionTypes[i] = primaryWeights.get(i).type();
+            weights[i] = primaryWeights.get(i).weight();
+        }
+        this.primaryExpressions = new AliasTable(weights);
+
+        OperatorLevel[] levels = OperatorLevel.values();
+        this.operatorProbabilities = new double[levels.length];
+        for (OperatorLevel level : levels) {
+            Double probability = settings.operatorProbabilities().get(level);
+            if (probability == null) {
+                throw new IllegalArgumentException("No operator probability for %s".formatted(level));
+            }
+            if (!(probability >= 0 && probability < 1)) {
+                throw new IllegalArgumentException("Invalid operator probability %s for %s, must be in [0, 1)"
+                        .formatted(probability, level));
+            }
+            this.operatorProbabilities[level.ordinal()] = probability;
+        }
+    }
+
+    StatementType sampleStatement(RandomGenerator random) {
+        StatementType type = this.statementTypes[this.statements.sample(random)];
+        this.stats.statement(type);
+        return type;
+    }
+
+    PrimaryExpressionType samplePrimaryExpression(RandomGenerator random) {
+        PrimaryExpressionType type = this.primaryExpressionTypes[this.primaryExpressions.sample(random)];
+        this.stats.primaryExpression(type);
+        return type;
+    }
+
+    /**
+     * {@return true if an operator of the given level should be generated}
+     */
+    boolean sampleOperator(OperatorLevel level, RandomGenerator random) {
+        if (random.nextDouble() < this.operatorProbabilities[level.ordinal()]) {
+            this.stats.operator(level);
+            return true;
+        }
+        return false;
+    }
+}
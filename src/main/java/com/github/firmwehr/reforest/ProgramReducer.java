@@ -0,0 +1,538 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.MethodDeclaration;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.model.Variable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reduces a program while an external command still considers it interesting. The program is shrunk along
+ * its structure, by dropping classes, members and statements, and by replacing expressions with literals.
+ * Every candidate is therefore syntactically valid. Declarations are only dropped together with all their
+ * uses: candidates using a class, field, method or local variable that isn't declared anymore are rejected
+ * without running the command. The main method, its class and the final return statement of methods
+ * returning a value are never dropped.
+ * <p>
+ * On each level, consecutive chunks of nodes are removed, starting with all of them and halving the chunk
+ * size whenever no chunk can be removed. Candidates are tested in parallel, the first interesting one in
+ * program order is kept, so the result doesn't depend on the amount of threads. Test results are cached
+ * by the hash of the printed candidate.
+ */
+public class ProgramReducer implements AutoCloseable {
+    private final List<String> command;
+    private final int interestingExitCode;
+    private final Duration timeout;
+    private final int threads;
+    private final ExecutorService executor;
+    private final Path workDirectory;
+    private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+    private final AtomicInteger testRuns = new AtomicInteger();
+
+    /**
+     * @param command the command to test programs with, the path of the program is appended as last argument
+     * @param interestingExitCode the exit code of interesting programs
+     * @param timeout the time after which the command is killed, the candidate then isn't interesting
+     * @param threads the amount of tests to run in parallel
+     * @throws IOException if the directory for the candidates could not be created
+     */
+    public ProgramReducer(List<String> command, int interestingExitCode, Duration timeout, int threads)
+            throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The amount of threads must be positive, was %d".formatted(threads));
+        }
+        this.command = List.copyOf(command);
+        this.interestingExitCode = interestingExitCode;
+        this.timeout = timeout;
+        this.threads = threads;
+        // the tests mostly wait for processes, so they don't belong in a fork join pool
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.workDirectory = Files.createTempDirectory("reforest-reduce");
+    }
+
+    /**
+     * Reduces the program until no single node can be removed or simplified anymore.
+     *
+     * @param program the program to reduce, which has to be interesting
+     * @return the reduced program
+     * @throws IOException if a candidate could not be tested
+     */
+    public List<ClassDeclaration> reduce(List<ClassDeclaration> program) throws IOException {
+        if (test(List.of(program)) == null) {
+            throw new IllegalArgumentException("The program isn't interesting to begin with");
+        }
+        boolean progress;
+        do {
+            progress = false;
+            for (Level level : Level.values()) {
+                List<ClassDeclaration> reduced = reduce(program, level);
+                progress |= reduced != program;
+                program = reduced;
+            }
+        } while (progress);
+        return program;
+    }
+
+    /**
+     * @return the amount of candidates tested by running the command, without cache hits
+     */
+    public int testRuns() {
+        return this.testRuns.get();
+    }
+
+    private List<ClassDeclaration> reduce(List<ClassDeclaration> program, Level level) throws IOException {
+        int count = new Rewriter(level, 0, 0).count(program);
+        int chunk = count;
+        while (chunk > 0) {
+            boolean removed = false;
+            int from = 0;
+            while (from < count) {
+                List<List<ClassDeclaration>> candidates = new ArrayList<>(this.threads);
+                for (int start = from; start < count && candidates.size() < this.threads; start += chunk) {
+                    candidates.add(new Rewriter(level, start, Math.min(start + chunk, count)).rewrite(program));
+                }
+                Integer interesting = test(candidates);
+                if (interesting == null) {
+                    from += candidates.size() * chunk;
+                } else {
+                    // the nodes after the removed chunk move up, so the next candidate starts at the same index
+                    from += interesting * chunk;
+                    program = candidates.get(interesting);
+                    count = new Rewriter(level, 0, 0).count(program);
+                    removed = true;
+                }
+            }
+            if (!removed) {
+                chunk /= 2;
+            }
+            chunk = Math.min(chunk, count);
+        }
+        return program;
+    }
+
+    /**
+     * Tests the candidates in parallel.
+     *
+     * @return the index of the first interesting candidate, or {@code null} if none is interesting
+     */
+    private Integer test(List<List<ClassDeclaration>> candidates) throws IOException {
+        List<Future<Boolean>> futures = new ArrayList<>(candidates.size());
+        for (List<ClassDeclaration> candidate : candidates) {
+            futures.add(ReferenceChecker.isClosed(candidate)
+                    ? this.executor.submit(() -> isInteresting(candidate))
+                    : CompletableFuture.completedFuture(false));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i).get()) {
+                    return i;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while testing candidates", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IllegalStateException("Failed to test candidate", e.getCause());
+        }
+    }
+
+    private boolean isInteresting(List<ClassDeclaration> candidate) {
+        try {
+            String source = print(candidate);
+            String hash = hash(source);
+            Boolean cached = this.results.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+            Path path = this.workDirectory.resolve(hash + ".java");
+            List<String> commandLine = new ArrayList<>(this.command);
+            commandLine.add(path.toString());
+            boolean interesting;
+            Files.writeString(path, source);
+            try {
+                Process process = new ProcessBuilder(commandLine)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (process.waitFor(this.timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    interesting = process.exitValue() == this.interestingExitCode;
+                } else {
+                    // the command may have started processes of its own, which would keep running
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly().waitFor();
+                    interesting = false;
+                }
+            } finally {
+                Files.delete(path);
+            }
+            this.testRuns.incrementAndGet();
+            this.results.put(hash, interesting);
+            return interesting;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while testing candidate", e);
+        }
+    }
+
+    static String print(List<ClassDeclaration> program) {
+        StringWriter writer = new StringWriter();
+        try {
+            new MiniJavaPrinter(writer).printProgram(program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen, we don't do IO here
+        }
+        return writer.toString();
+    }
+
+    private static String hash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always supported", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdownNow();
+        Files.deleteIfExists(this.workDirectory);
+    }
+
+    private enum Level {
+        CLASSES,
+        MEMBERS,
+        STATEMENTS,
+        EXPRESSIONS
+    }
+
+    /**
+     * Copies a program, without the nodes of one level in a range of their pre-order index.
+     * Expressions in that range are replaced with literals instead. Removed nodes are still visited,
+     * so the index of a node is the same in every copy of a program. Nodes that must never be removed
+     * don't get an index.
+     */
+    private static final class Rewriter {
+        private final Level level;
+        private final int from;
+        private final int to;
+        private int index;
+
+        Rewriter(Level level, int from, int to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        int count(List<ClassDeclaration> program) {
+            rewrite(program);
+            return this.index;
+        }
+
+        List<ClassDeclaration> rewrite(List<ClassDeclaration> program) {
+            List<ClassDeclaration> classes = new ArrayList<>(program.size());
+            for (ClassDeclaration declaration : program) {
+                boolean removed = !hasMainMethod(declaration) && remove(Level.CLASSES);
+                ClassDeclaration rewritten = rewrite(declaration);
+                if (!removed) {
+                    classes.add(rewritten);
+                }
+            }
+            return classes;
+        }
+
+        private ClassDeclaration rewrite(ClassDeclaration declaration) {
+            List<Field> fields = new ArrayList<>();
+            for (Field field : declaration.fields()) {
+                if (!remove(Level.MEMBERS)) {
+                    fields.add(field);
+                }
+            }
+            List<MethodDeclaration> methods = new ArrayList<>();
+            List<Method> signatures = new ArrayList<>();
+            for (MethodDeclaration method : declaration.methods()) {
+                boolean removed = !method.method().isStatic() && remove(Level.MEMBERS);
+                Block body = rewriteBody(method.body());
+                if (removed) {
+                    continue;
+                }
+                methods.add(new MethodDeclaration(method.method(), body));
+                // main methods aren't part of the skeleton
+                if (!method.method().isStatic()) {
+                    signatures.add(method.method());
+                }
+            }
+            ClassSkeleton skeleton = declaration.skeleton();
+            return new ClassDeclaration(new ClassSkeleton(skeleton.name(), skeleton.type(), fields, signatures), methods);
+        }
+
+        private Block rewriteBody(Block body) {
+            return rewrite(body, true);
+        }
+
+        private Block rewrite(Block block) {
+            return rewrite(block, false);
+        }
+
+        private Block rewrite(Block block, boolean isBody) {
+            List<Statement> statements = new ArrayList<>(block.statements().size());
+            for (Statement statement : block.statements()) {
+                // methods returning a value end with a return statement in their body
+                boolean required = isBody && statement instanceof ReturnStatement returnStatement
+                        && returnStatement.value() != null;
+                boolean removed = !required && remove(Level.STATEMENTS);
+                Statement rewritten = rewrite(statement);
+                if (!removed) {
+                    statements.add(rewritten);
+                }
+            }
+            return new Block(statements);
+        }
+
+        private Statement rewrite(Statement statement) {
+            if (statement instanceof Block block) {
+                return rewrite(block);
+            } else if (statement instanceof LocalVariableDeclaration declaration) {
+                return declaration.initializer() == null
+                        ? declaration
+                        : new LocalVariableDeclaration(declaration.variable(), rewrite(declaration.initializer()));
+            } else if (statement instanceof WhileStatement whileStatement) {
+                return new WhileStatement(rewrite(whileStatement.condition()), rewrite(whileStatement.body()));
+            } else if (statement instanceof IfStatement ifStatement) {
+                return new IfStatement(
+                        rewrite(ifStatement.condition()),
+                        rewrite(ifStatement.thenStatement()),
+                        ifStatement.elseStatement() == null ? null : rewrite(ifStatement.elseStatement())
+                );
+            } else if (statement instanceof ExpressionStatement expressionStatement) {
+                // a literal isn't a useful statement, those are removed as a whole instead
+                return new ExpressionStatement(rewriteOperands(expressionStatement.expression()));
+            } else if (statement instanceof ReturnStatement returnStatement) {
+                return returnStatement.value() == null
+                        ? returnStatement
+                        : new ReturnStatement(rewrite(returnStatement.value()));
+            }
+            return statement;
+        }
+
+        private Expression rewrite(Expression expression) {
+            boolean simplifiable = !(expression instanceof IntegerLiteral
+                    || expression instanceof BooleanLiteral
+                    || expression instanceof NullLiteral
+                    || expression.type().equals(Type.VOID));
+            boolean removed = simplifiable && remove(Level.EXPRESSIONS);
+            Expression rewritten = rewriteOperands(expression);
+            return removed ? literal(expression.type()) : rewritten;
+        }
+
+        private Expression rewriteOperands(Expression expression) {
+            if (expression instanceof BinaryOperation operation) {
+                return new BinaryOperation(
+                        operation.operator(),
+                        rewrite(operation.left()),
+                        rewrite(operation.right()),
+                        operation.type()
+                );
+            } else if (expression instanceof UnaryOperation operation) {
+                return new UnaryOperation(operation.operator(), rewrite(operation.operand()));
+            } else if (expression instanceof Assignment assignment) {
+                // the target has to stay assignable
+                return new Assignment(rewriteOperands(assignment.target()), rewrite(assignment.value()), assignment.type());
+            } else if (expression instanceof ArrayAccess access) {
+                // the array has to stay an array, null[i] isn't valid
+                return new ArrayAccess(rewriteOperands(access.array()), rewrite(access.index()), access.type());
+            } else if (expression instanceof MethodInvocation invocation) {
+                return new MethodInvocation(invocation.method(), invocation.arguments().stream().map(this::rewrite).toList());
+            } else if (expression instanceof NewArray newArray) {
+                return new NewArray(newArray.type(), rewrite(newArray.size()));
+            }
+            return expression;
+        }
+
+        private boolean remove(Level nodeLevel) {
+            if (nodeLevel != this.level) {
+                return false;
+            }
+            int nodeIndex = this.index++;
+            return this.from <= nodeIndex && nodeIndex < this.to;
+        }
+
+        private static boolean hasMainMethod(ClassDeclaration declaration) {
+            return declaration.methods().stream().anyMatch(method -> method.method().isStatic());
+        }
+
+        private static Expression literal(Type type) {
+            if (type.equals(Type.INT)) {
+                return new IntegerLiteral(0);
+            } else if (type.equals(Type.BOOLEAN)) {
+                return new BooleanLiteral(false);
+            }
+            return NullLiteral.INSTANCE;
+        }
+    }
+
+    /**
+     * Checks whether every class, field, method and local variable used in a program is declared, local
+     * variables in an enclosing scope before their use. Thrown types aren't checked, as they aren't classes
+     * of the program.
+     */
+    private static final class ReferenceChecker {
+        private final Set<Type> classTypes = new HashSet<>();
+        private final Deque<Set<Variable>> scopes = new ArrayDeque<>();
+        private Set<Field> fields;
+        private Set<Method> methods;
+
+        static boolean isClosed(List<ClassDeclaration> program) {
+            ReferenceChecker checker = new ReferenceChecker();
+            for (ClassDeclaration declaration : program) {
+                checker.classTypes.add(declaration.skeleton().type());
+            }
+            return program.stream().allMatch(checker::check);
+        }
+
+        private boolean check(ClassDeclaration declaration) {
+            this.fields = Set.copyOf(declaration.fields());
+            this.methods = new HashSet<>();
+            for (MethodDeclaration method : declaration.methods()) {
+                this.methods.add(method.method());
+            }
+            if (!declaration.fields().stream().allMatch(field -> isDeclared(field.type()))) {
+                return false;
+            }
+            for (MethodDeclaration method : declaration.methods()) {
+                if (!isDeclared(method.method().returnType())) {
+                    return false;
+                }
+                Set<Variable> parameters = new HashSet<>();
+                for (Parameter parameter : method.method().parameters()) {
+                    if (!isDeclared(parameter.type())) {
+                        return false;
+                    }
+                    parameters.add(parameter);
+                }
+                this.scopes.push(parameters);
+                boolean declared = check(method.body());
+                this.scopes.clear();
+                if (!declared) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean check(Statement statement) {
+            if (statement instanceof Block block) {
+                this.scopes.push(new HashSet<>());
+                boolean declared = block.statements().stream().allMatch(this::check);
+                this.scopes.pop();
+                return declared;
+            } else if (statement instanceof LocalVariableDeclaration declaration) {
+                boolean declared = isDeclared(declaration.variable().type())
+                        && (declaration.initializer() == null || check(declaration.initializer()));
+                // not in scope of its own initializer
+                this.scopes.element().add(declaration.variable());
+                return declared;
+            } else if (statement instanceof WhileStatement whileStatement) {
+                return check(whileStatement.condition()) && check(whileStatement.body());
+            } else if (statement instanceof IfStatement ifStatement) {
+                return check(ifStatement.condition())
+                        && check(ifStatement.thenStatement())
+                        && (ifStatement.elseStatement() == null || check(ifStatement.elseStatement()));
+            } else if (statement instanceof ExpressionStatement expressionStatement) {
+                return check(expressionStatement.expression());
+            } else if (statement instanceof ReturnStatement returnStatement) {
+                return returnStatement.value() == null || check(returnStatement.value());
+            }
+            return true;
+        }
+
+        private boolean check(Expression expression) {
+            if (expression instanceof BinaryOperation operation) {
+                return check(operation.left()) && check(operation.right());
+            } else if (expression instanceof UnaryOperation operation) {
+                return check(operation.operand());
+            } else if (expression instanceof Assignment assignment) {
+                return check(assignment.target()) && check(assignment.value());
+            } else if (expression instanceof VariableAccess access) {
+                // fields are always accessed on this
+                return access.variable() instanceof Field field
+                        ? this.fields.contains(field)
+                        : this.scopes.stream().anyMatch(scope -> scope.contains(access.variable()));
+            } else if (expression instanceof ArrayAccess access) {
+                return check(access.array()) && check(access.index());
+            } else if (expression instanceof MethodInvocation invocation) {
+                // methods are always invoked on this
+                return this.methods.contains(invocation.method())
+                        && invocation.arguments().stream().allMatch(this::check);
+            } else if (expression instanceof NewObject newObject) {
+                return isDeclared(newObject.type());
+            } else if (expression instanceof NewArray newArray) {
+                return isDeclared(newArray.type()) && check(newArray.size());
+            }
+            return true;
+        }
+
+        private boolean isDeclared(Type type) {
+            Type baseType = type.baseType();
+            return baseType == Type.VOID
+                    || baseType == Type.INT
+                    || baseType == Type.BOOLEAN
+                    || baseType == Type.STRING
+                    || this.classTypes.contains(baseType);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Statement.Block;
+
+import java.io.IOException;
+
+/**
+ * Receives a program while it is generated. Classes are passed in order; the methods of a class are
+ * passed between {@link #startClass(ClassSkeleton)} and {@link #endClass(ClassSkeleton)}.
+ * <p>
+ * Method bodies are not referenced by the generator after they were passed to the sink, so a sink that
+ * doesn't keep them allows generating programs of arbitrary size with bounded memory.
+ */
+public interface ProgramSink {
+
+    void startClass(ClassSkeleton skeleton) throws IOException;
+
+    void method(Method method, Block body) throws IOException;
+
+    void endClass(ClassSkeleton skeleton) throws IOException;
+
+    /**
+     * {@return the amount of chars written so far, or {@code -1} if the sink doesn't write text}
+     */
+    default long writtenChars() {
+        return -1;
+    }
+
+    /**
+     * {@return a sink passing the program to both given sinks, which reports the written chars of the first}
+     *
+     * @param first the sink to pass the program to first
+     * @param second the sink to pass the program to second
+     */
+    static ProgramSink both(ProgramSink first, ProgramSink second) {
+        return new ProgramSink() {
+            @Override
+            public void startClass(ClassSkeleton skeleton) throws IOException {
+                first.startClass(skeleton);
+                second.startClass(skeleton);
+            }
+
+            @Override
+            public void method(Method method, Block body) throws IOException {
+                first.method(method, body);
+                second.method(method, body);
+            }
+
+            @Override
+            public void endClass(ClassSkeleton skeleton) throws IOException {
+                first.endClass(skeleton);
+                second.endClass(skeleton);
+            }
+
+            @Override
+            public long writtenChars() {
+                return first.writtenChars();
+            }
+        };
+    }
+}
@@ -1,14 +1,25 @@
 package com.github.firmwehr.reforest;
 
-import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.WeightedStatementType;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.GenerationLimits;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.SizeTarget;
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.spoon.SpoonAdapter;
+import com.github.firmwehr.reforest.util.CorpusArchive;
+import com.github.firmwehr.reforest.util.HashStore;
+import com.github.firmwehr.reforest.util.MappedWordList;
+import com.github.firmwehr.reforest.util.WordList;
 import spoon.reflect.declaration.CtClass;
 
-import javax.lang.model.SourceVersion;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.random.RandomGenerator;
 import java.util.random.RandomGeneratorFactory;
@@ -16,14 +27,83 @@ import java.util.random.RandomGeneratorFactory;
 public class RandomProgramGenerator {
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("compile-words")) {
+            compileWords(new CompileWordsOptionsParser().parseOrExit(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("cat")) {
+            cat(new CatOptionsParser().parseOrExit(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("extract")) {
+            extract(new ExtractOptionsParser().parseOrExit(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("reduce")) {
+            reduce(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("fuzz")) {
+            fuzz(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("validate")) {
+            validate(args);
+            return;
+        }
         Options options = new OptionsParser().parseOrExit(args);
-        Path wordListPath = options.wordList().orElse(Path.of("src", "main", "resources", "words.txt"));
-        List<String> list = Files.readAllLines(wordListPath, StandardCharsets.ISO_8859_1)
-                .stream()
-                .filter(SourceVersion::isIdentifier)
-                .distinct()
-                .toList();
-        var settings = new RandomSourceGeneratorSettings(
+        GenerationStats stats = new GenerationStats();
+        var settings = createSettings(options, stats);
+        var seed = options.seed().orElse(ThreadLocalRandom.current().nextInt());
+        if (options.count().isPresent()) {
+            generateBatch(options, settings, seed, options.count().getAsInt(), stats);
+        } else {
+            generateSingle(options, settings, seed, stats);
+        }
+        if (options.statsPath().isPresent()) {
+            try (Writer writer = Files.newBufferedWriter(options.statsPath().get())) {
+                stats.writeJson(writer);
+            }
+        }
+    }
+
+    private static RandomSourceGeneratorSettings createSettings(Options options, GenerationStats stats)
+            throws IOException {
+        long startNanos = System.nanoTime();
+        long startAllocatedBytes = GenerationStats.allocatedBytes();
+        WordList list = options.wordList().isPresent()
+                ? WordList.load(options.wordList().get())
+                : WordList.embedded();
+        stats.endPhase(GenerationStats.Phase.WORD_LIST, startNanos, startAllocatedBytes);
+        GrammarWeights grammarWeights = GrammarWeights.DEFAULT;
+        if (options.grammarWeights().isPresent()) {
+            grammarWeights = grammarWeights.withOverrides(options.grammarWeights().get());
+        }
+        SizeTarget sizeTarget = null;
+        if (options.targetNodes().isPresent() && options.targetBytes().isPresent()) {
+            throw new IllegalArgumentException("Only one of --target-nodes and --target-bytes can be given");
+        } else if (options.targetNodes().isPresent()) {
+            sizeTarget = new SizeTarget(SizeTarget.Unit.NODES, options.targetNodes().getAsLong());
+        } else if (options.targetBytes().isPresent()) {
+            sizeTarget = new SizeTarget(SizeTarget.Unit.BYTES, options.targetBytes().getAsLong());
+        }
+        // without a bound on the nodes, nesting deeper than the recursive generator makes programs grow exponentially
+        if (options.maxDepth().isPresent() && options.nodeLimit().isEmpty() && sizeTarget == null) {
+            throw new IllegalArgumentException("--max-depth requires --node-limit, --target-nodes or --target-bytes");
+        }
+        GenerationLimits limits = GenerationLimits.NONE;
+        if (options.nodeLimit().isPresent() || options.timeLimit().isPresent() || options.maxDepth().isPresent()) {
+            limits = new GenerationLimits(
+                    options.nodeLimit().orElse(GenerationLimits.NONE.maxNodes()),
+                    options.timeLimit().isPresent() ? Duration.ofMillis(options.timeLimit().getAsLong()) : null,
+                    options.maxDepth().orElse(GenerationLimits.NONE.maxDepth())
+            );
+        }
+        return new RandomSourceGeneratorSettings(
                 options.fieldToMethodRatio().orElse(0.3),
                 options.arrayTypePercentage().orElse(0.15),
                 options.approximateNameLength().orElse(24),
@@ -32,25 +112,329 @@ public class RandomProgramGenerator {
                 10,
                 options.statementsPerBlock().orElse(15),
                 list,
-                List.of(
-                        new WeightedStatementType(0.05, StatementType.EMPTY),
-                        new WeightedStatementType(0.2, StatementType.LOCAL_VARIABLE_DECLARATION),
-                        new WeightedStatementType(0.3, StatementType.EXPRESSION),
-                        new WeightedStatementType(0.1, StatementType.IF),
-                        new WeightedStatementType(0.08, StatementType.WHILE),
-                        new WeightedStatementType(0.06, StatementType.RETURN),
-                        new WeightedStatementType(0.07, StatementType.BLOCK)
-                )
+                grammarWeights.statementWeights(),
+                grammarWeights.primaryExpressionWeights(),
+                grammarWeights.operatorProbabilities(),
+                sizeTarget,
+                limits
         );
-        RandomGeneratorFactory<RandomGenerator> generatorFactory = RandomGeneratorFactory.getDefault();
+    }
+
+    private static void generateSingle(Options options, RandomSourceGeneratorSettings settings, long seed,
+                                       GenerationStats stats) throws IOException {
+        Path outputPath = options.outputPath().orElseThrow(
+                () -> new IllegalArgumentException("Either --output or --count and --output-dir must be given"));
+        System.out.println("Using seed: " + seed);
+        if (options.onlyMethod().isPresent()) {
+            writeMethod(outputPath, seed, settings, stats, options.onlyMethod().get());
+            return;
+        }
+        int classCount;
+        if (options.spoon()) {
+            if (!isSpoonAvailable()) {
+                throw new IllegalArgumentException("--spoon needs spoon on the classpath, native images don't include it");
+            }
+            List<ClassDeclaration> classes = createGenerator(seed, settings, stats).generateProgram();
+            classCount = classes.size();
+            long startNanos = System.nanoTime();
+            long startAllocatedBytes = GenerationStats.allocatedBytes();
+            writeSpoonProgram(outputPath, classes);
+            stats.endPhase(GenerationStats.Phase.PRINTING, startNanos, startAllocatedBytes);
+            stats.program(Files.size(outputPath));
+        } else {
+            int threads = options.threads().orElse(Runtime.getRuntime().availableProcessors());
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                classCount = writeProgram(outputPath, seed, settings, stats, pool);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        System.out.println("Generated " + classCount + " classes");
+    }
+
+    private static void generateBatch(Options options, RandomSourceGeneratorSettings settings, long firstSeed, int count,
+                                      GenerationStats stats) throws IOException {
+        if (count <= 0) {
+            throw new IllegalArgumentException("The count must be positive, was %d".formatted(count));
+        }
+        if (options.outputDirectory().isPresent() == options.archivePath().isPresent()) {
+            throw new IllegalArgumentException("Batch mode requires either an --output-dir or an --archive");
+        }
+        if (options.deduplication().isEmpty() && options.deduplicationStore().isPresent()) {
+            throw new IllegalArgumentException("--dedup-store requires --dedup");
+        }
+        if (options.spoon()) {
+            throw new IllegalArgumentException("--spoon is not supported in batch mode");
+        }
+        if (options.onlyMethod().isPresent()) {
+            throw new IllegalArgumentException("--only is not supported in batch mode");
+        }
+        if (options.outputPath().isPresent()) {
+            throw new IllegalArgumentException("--output is not supported in batch mode, use --output-dir or --archive");
+        }
+        int threads = options.threads().orElse(Runtime.getRuntime().availableProcessors());
+        System.out.println("Using seeds: " + firstSeed + " to " + (firstSeed + count - 1));
+        BatchGenerator.Deduplication deduplication = options.deduplication().orElse(null);
+        try (HashStore seenHashes = deduplication == null ? null : openHashStore(options);
+             CorpusArchive.Writer archive = options.archivePath().isPresent()
+                     ? CorpusArchive.create(options.archivePath().get(), firstSeed, count)
+                     : null) {
+            var batchGenerator = archive == null
+                    ? new BatchGenerator(settings, options.outputDirectory().get(), threads, stats, deduplication,
+                    seenHashes)
+                    : new BatchGenerator(settings, archive, threads, stats, deduplication, seenHashes);
+            batchGenerator.generate(firstSeed, count);
+            if (archive != null) {
+                archive.finish();
+            }
+            Path destination = options.outputDirectory().or(options::archivePath).get();
+            long skipped = batchGenerator.skipped();
+            System.out.println("Generated " + (count - skipped) + " programs in " + destination
+                    + (deduplication == null ? "" : ", skipped " + skipped + " duplicates"));
+        }
+    }
+
+    private static HashStore openHashStore(Options options) throws IOException {
+        return options.deduplicationStore().isPresent()
+                ? HashStore.open(options.deduplicationStore().get())
+                : HashStore.inMemory();
+    }
+
+    private static void reduce(String[] args) throws IOException {
+        ReduceOptions reduceOptions = new ReduceOptionsParser().parseOrExit(commandArguments(args));
+        Options options = new OptionsParser().parseOrExit(generatorArguments(args));
+        var settings = createSettings(options, new GenerationStats());
         var seed = options.seed().orElse(ThreadLocalRandom.current().nextInt());
         System.out.println("Using seed: " + seed);
+        List<ClassDeclaration> program = createGenerator(seed, settings).generateProgram();
+        List<String> command = List.of(reduceOptions.command().trim().split("\\s+"));
+        Duration timeout = Duration.ofSeconds(reduceOptions.timeoutSeconds().orElse(60));
+        int threads = reduceOptions.threads().orElse(Runtime.getRuntime().availableProcessors());
+        List<ClassDeclaration> reduced;
+        int testRuns;
+        try (ProgramReducer reducer = new ProgramReducer(command, reduceOptions.exitCode(), timeout, threads)) {
+            reduced = reducer.reduce(program);
+            testRuns = reducer.testRuns();
+        }
+        String source = ProgramReducer.print(reduced);
+        Files.writeString(reduceOptions.outputPath(), source);
+        System.out.println("Reduced from " + ProgramReducer.print(program).length() + " to " + source.length()
+                + " characters in " + testRuns + " tests");
+    }
+
+    private static void serve(String[] args) throws IOException {
+        ServeOptions serveOptions = new ServeOptionsParser().parseOrExit(commandArguments(args));
+        Options options = new OptionsParser().parseOrExit(generatorArguments(args));
+        var settings = createSettings(options, new GenerationStats());
+        int threads = serveOptions.threads().orElse(Runtime.getRuntime().availableProcessors());
+        try (GenerationServer server = new GenerationServer(settings, threads)) {
+            server.warmUp(serveOptions.warmUpPrograms().orElse(20));
+            if (serveOptions.socketPath().isPresent()) {
+                System.err.println("Listening on " + serveOptions.socketPath().get());
+                server.serve(serveOptions.socketPath().get());
+            } else {
+                server.serve(System.in, System.out);
+            }
+        }
+    }
+
+    private static void fuzz(String[] args) throws IOException {
+        FuzzOptions fuzzOptions = new FuzzOptionsParser().parseOrExit(commandArguments(args));
+        Options options = new OptionsParser().parseOrExit(generatorArguments(args));
+        var settings = createSettings(options, new GenerationStats());
+        var seed = options.seed().orElse(ThreadLocalRandom.current().nextInt());
+        System.out.println("Using seeds from " + seed);
+        List<List<String>> compilers = fuzzOptions.compilers().stream()
+                .map(command -> List.of(command.trim().split("\\s+")))
+                .toList();
+        var pipeline = new FuzzPipeline(
+                settings,
+                compilers,
+                fuzzOptions.exitCode().orElse(0),
+                Duration.ofSeconds(fuzzOptions.timeoutSeconds().orElse(60)),
+                fuzzOptions.outputDirectory(),
+                fuzzOptions.generatorThreads().orElse(1),
+                fuzzOptions.compilerThreads().orElse(Runtime.getRuntime().availableProcessors())
+        );
+        pipeline.run(seed, fuzzOptions.count().orElse(Long.MAX_VALUE), System.err);
+        System.out.println("Saved " + pipeline.failed() + " failed programs in " + fuzzOptions.outputDirectory());
+    }
+
+    private static void validate(String[] args) throws IOException {
+        ValidateOptions validateOptions = new ValidateOptionsParser().parseOrExit(commandArguments(args));
+        Options options = new OptionsParser().parseOrExit(generatorArguments(args));
+        var settings = createSettings(options, new GenerationStats());
+        var seed = options.seed().orElse(ThreadLocalRandom.current().nextInt());
+        System.out.println("Using seeds from " + seed);
+        int threads = validateOptions.threads().orElse(Runtime.getRuntime().availableProcessors());
+        new JavaValidator(settings, threads).run(seed, validateOptions.count().orElse(100), System.out);
+    }
+
+    /**
+     * @return the arguments of a subcommand, up to the options of the generated program after '--'
+     */
+    private static String[] commandArguments(String[] args) {
+        int separator = Arrays.asList(args).indexOf("--");
+        return Arrays.copyOfRange(args, 1, separator < 0 ? args.length : separator);
+    }
+
+    private static String[] generatorArguments(String[] args) {
+        int separator = Arrays.asList(args).indexOf("--");
+        return separator < 0 ? new String[0] : Arrays.copyOfRange(args, separator + 1, args.length);
+    }
+
+    private static void compileWords(CompileWordsOptions options) throws IOException {
+        List<String> words = WordList.readTextFile(options.wordList());
+        MappedWordList.compile(words, options.outputPath());
+        System.out.println("Compiled " + words.size() + " words to " + options.outputPath());
+    }
+
+    private static void cat(CatOptions options) throws IOException {
+        CorpusArchive archive = CorpusArchive.map(options.archivePath());
+        List<Long> seeds = options.seeds().isEmpty() ? archive.seeds().boxed().toList() : options.seeds();
+        for (long seed : seeds) {
+            byte[] source = archive.source(seed);
+            System.out.write(source, 0, source.length);
+        }
+        System.out.flush();
+    }
+
+    private static void extract(ExtractOptions options) throws IOException {
+        CorpusArchive archive = CorpusArchive.map(options.archivePath());
+        List<Long> seeds = options.seeds().isEmpty() ? archive.seeds().boxed().toList() : options.seeds();
+        Files.createDirectories(options.outputDirectory());
+        for (long seed : seeds) {
+            Files.write(BatchGenerator.programPath(options.outputDirectory(), seed), archive.source(seed));
+        }
+        System.out.println("Extracted " + seeds.size() + " programs to " + options.outputDirectory());
+    }
+
+    static RandomSourceGenerator createGenerator(long seed, RandomSourceGeneratorSettings settings) {
+        return createGenerator(seed, settings, new GenerationStats());
+    }
+
+    static RandomSourceGenerator createGenerator(long seed, RandomSourceGeneratorSettings settings,
+                                                 GenerationStats stats) {
+        RandomGeneratorFactory<RandomGenerator> generatorFactory = RandomGeneratorFactory.getDefault();
         var random = generatorFactory.create(seed);
-        var generator = new RandomSourceGenerator(random, settings);
-        List<String> classes = generator.generateProgram().stream()
+        return new RandomSourceGenerator(random, settings, stats);
+    }
+
+    /**
+     * Generates a single program and writes it to the given path. Each method is printed as soon as its
+     * body was generated, so memory usage doesn't depend on the size of the program.
+     * The result only depends on the seed and the settings, so batch runs produce the same output as
+     * single runs with the same seed.
+     *
+     * @param path the file to write the program to
+     * @param seed the seed to use for RNG
+     * @param settings the settings to use
+     * @param stats the stats to record the generation in
+     * @param pool the pool to generate method bodies in, or {@code null} to generate them in the current thread
+     * @return the amount of generated classes
+     * @throws IOException if the program could not be written
+     */
+    static int writeProgram(Path path, long seed, RandomSourceGeneratorSettings settings, GenerationStats stats,
+                            ForkJoinPool pool) throws IOException {
+        return writeProgram(path, seed, settings, stats, pool, null);
+    }
+
+    /**
+     * Like {@link #writeProgram(Path, long, RandomSourceGeneratorSettings, GenerationStats, ForkJoinPool)}, but
+     * also passes the program to the given sink while it is written.
+     *
+     * @param observer the sink to pass the program to as well, or {@code null}
+     */
+    static int writeProgram(Path path, long seed, RandomSourceGeneratorSettings settings, GenerationStats stats,
+                            ForkJoinPool pool, ProgramSink observer) throws IOException {
+        return writeProgram(path, createGenerator(seed, settings, stats), stats, pool, observer);
+    }
+
+    /**
+     * Like {@link #writeProgram(Path, long, RandomSourceGeneratorSettings, GenerationStats, ForkJoinPool, ProgramSink)},
+     * but with a generator that is seeded already, e.g. one reused with {@link RandomSourceGenerator#reset(long)}.
+     *
+     * @param generator the generator of the program, with the stats it records the generation in
+     */
+    static int writeProgram(Path path, RandomSourceGenerator generator, GenerationStats stats, ForkJoinPool pool,
+                            ProgramSink observer) throws IOException {
+        int classCount;
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            ProgramSink printer = new MiniJavaPrinter(writer);
+            if (observer != null) {
+                printer = ProgramSink.both(printer, observer);
+            }
+            classCount = generator.generateProgram(printer, pool).size();
+        }
+        stats.program(Files.size(path));
+        return classCount;
+    }
+
+    /**
+     * Generates a program into a string, with its method bodies generated in the current thread. Used by callers
+     * generating many programs in parallel, which reuse a generator with {@link RandomSourceGenerator#reset(long)}.
+     *
+     * @param generator the generator of the program, seeded already
+     * @return the source of the program
+     */
+    static String generateSource(RandomSourceGenerator generator) {
+        return generateSource(generator, null, null);
+    }
+
+    /**
+     * Like {@link #generateSource(RandomSourceGenerator)}, but also records the printed nodes in a source map
+     * and passes the program to the given sink while it is printed.
+     *
+     * @param sourceMap the source map to add the printed nodes to, or {@code null}
+     * @param observer the sink to pass the program to as well, or {@code null}
+     */
+    static String generateSource(RandomSourceGenerator generator, SourceMap sourceMap, ProgramSink observer) {
+        StringWriter writer = new StringWriter();
+        ProgramSink printer = new MiniJavaPrinter(writer, sourceMap);
+        if (observer != null) {
+            printer = ProgramSink.both(printer, observer);
+        }
+        try {
+            generator.generateProgram(printer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen, we don't do IO here
+        }
+        return writer.toString();
+    }
+
+    private static void writeMethod(Path path, long seed, RandomSourceGeneratorSettings settings,
+                                    GenerationStats stats, String qualifiedName) throws IOException {
+        int separator = qualifiedName.indexOf('.');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected CLASS.METHOD, was '%s'".formatted(qualifiedName));
+        }
+        String className = qualifiedName.substring(0, separator);
+        String methodName = qualifiedName.substring(separator + 1);
+        boolean found;
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            found = createGenerator(seed, settings, stats).generateMethod(className, methodName, new MiniJavaPrinter(writer));
+        }
+        if (!found) {
+            Files.delete(path);
+            throw new IllegalArgumentException("The program of seed %d has no method %s".formatted(seed, qualifiedName));
+        }
+        System.out.println("Regenerated " + qualifiedName);
+    }
+
+    private static boolean isSpoonAvailable() {
+        try {
+            Class.forName("spoon.Launcher", false, RandomProgramGenerator.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void writeSpoonProgram(Path path, List<ClassDeclaration> classes) throws IOException {
+        List<String> sources = new SpoonAdapter().toSpoon(classes).stream()
                 .map(CtClass::toString)
                 .toList();
-        System.out.println("Generated " + classes.size() + " classes");
-        Files.write(options.outputPath(), classes);
+        Files.write(path, sources);
     }
 }
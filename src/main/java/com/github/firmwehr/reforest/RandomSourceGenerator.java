@@ -1,172 +1,508 @@
 package com.github.firmwehr.reforest;
 
-import spoon.Launcher;
-import spoon.reflect.code.BinaryOperatorKind;
-import spoon.reflect.code.CtArrayAccess;
-import spoon.reflect.code.CtArrayRead;
-import spoon.reflect.code.CtBlock;
-import spoon.reflect.code.CtExpression;
-import spoon.reflect.code.CtFieldAccess;
-import spoon.reflect.code.CtFieldRead;
-import spoon.reflect.code.CtIf;
-import spoon.reflect.code.CtInvocation;
-import spoon.reflect.code.CtLocalVariable;
-import spoon.reflect.code.CtNewArray;
-import spoon.reflect.code.CtReturn;
-import spoon.reflect.code.CtStatement;
-import spoon.reflect.code.CtUnaryOperator;
-import spoon.reflect.code.CtVariableAccess;
-import spoon.reflect.code.CtWhile;
-import spoon.reflect.code.UnaryOperatorKind;
-import spoon.reflect.declaration.CtClass;
-import spoon.reflect.declaration.CtField;
-import spoon.reflect.declaration.CtMethod;
-import spoon.reflect.declaration.CtParameter;
-import spoon.reflect.declaration.CtTypeMember;
-import spoon.reflect.declaration.CtTypedElement;
-import spoon.reflect.declaration.CtVariable;
-import spoon.reflect.declaration.ModifierKind;
-import spoon.reflect.factory.Factory;
-import spoon.reflect.reference.CtExecutableReference;
-import spoon.reflect.reference.CtTypeReference;
-import spoon.reflect.reference.CtVariableReference;
-
-import javax.lang.model.SourceVersion;
+import com.github.firmwehr.reforest.GenerationStats.Phase;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.GenerationLimits;
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperator;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.ThisAccess;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperator;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.LocalVariable;
+import com.github.firmwehr.reforest.model.Member;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.MethodDeclaration;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.EmptyStatement;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.model.Variable;
+import com.github.firmwehr.reforest.util.FingerprintSet;
+import com.github.firmwehr.reforest.util.IdentifierGenerator;
+import com.github.firmwehr.reforest.util.Seeds;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.NavigableMap;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.function.Supplier;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.random.RandomGenerator;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.util.Comparator.comparing;
-import static java.util.stream.Stream.concat;
+import java.util.random.RandomGeneratorFactory;
 
 
 public class RandomSourceGenerator implements SourceGenerator {
-    private final RandomGenerator random;
+    private static final BinaryOperator[] RELATIONAL_OPERATORS = {
+            BinaryOperator.LT,
+            BinaryOperator.LE,
+            BinaryOperator.GT,
+            BinaryOperator.GE,
+    };
+    private static final BinaryOperator[] MULTIPLICATIVE_OPERATORS = {
+            BinaryOperator.MUL,
+            BinaryOperator.DIV,
+            BinaryOperator.MOD,
+    };
+
+    // replaced by reset
+    private RandomGenerator random;
     private final RandomSourceGeneratorSettings settings;
-    private final NavigableMap<Double, StatementType> statementTypes;
-    private final double statementBound;
-    private final Launcher launcher;
-    private final Factory factory;
+    private final ProductionTable productions;
+    private final GenerationStats stats;
+    private int blockDepth;
+    // only set while generating a program towards a size target
+    private SizeBudget budget;
+    // the limits of each method body of the current program, see GenerationLimits
+    private long nodesPerBody;
+    private long deadlineNanos;
+    // only set in generators for a single method body with limits
+    private NodeBudget nodeBudget;
+
+    private final List<Type> validFieldTypes;
+    private final List<Type> validMethodReturnTypes;
+    // the canonical type of each class, see Type
+    private final Map<String, Type> classTypes;
 
-    private final CtTypeReference<?> intType;
-    private final CtTypeReference<?> booleanType;
+    private final IdentifierGenerator identifiers;
+    // scopes the generated names have to be unique in
+    private final FingerprintSet typeNames;
+    private final FingerprintSet fieldNames;
+    private final FingerprintSet methodNames;
+    private final FingerprintSet parameterNames;
 
-    private final List<CtTypeReference<?>> validFieldTypes;
-    private final List<CtTypeReference<?>> validMethodReturnTypes;
+    private final Map<ClassSkeleton, MemberIndex> memberIndices;
+    // set by generateSkeletons, everything below the program level is seeded from it
+    private ProgramPlan plan;
 
     public RandomSourceGenerator(RandomGenerator random, RandomSourceGeneratorSettings settings) {
+        this(random, settings, new GenerationStats());
+    }
+
+    public RandomSourceGenerator(RandomGenerator random, RandomSourceGeneratorSettings settings, GenerationStats stats) {
         this.random = random;
         this.settings = settings;
-        this.statementTypes = new TreeMap<>();
-        double sum = 0;
-        for (RandomSourceGeneratorSettings.WeightedStatementType type : this.settings.statementWeights()) {
-            statementTypes.put(sum, type.type());
-            sum += type.weight();
-        }
-        this.statementBound = sum;
-        this.launcher = new Launcher();
-        this.factory = this.launcher.getFactory();
-
-        this.intType = this.factory.Type().INTEGER_PRIMITIVE;
-        this.booleanType = this.factory.Type().BOOLEAN_PRIMITIVE;
+        this.stats = stats;
+        this.productions = new ProductionTable(settings, stats);
 
         this.validFieldTypes = new ArrayList<>();
-        this.validFieldTypes.addAll(List.of(
-                this.intType,
-                this.booleanType
-        ));
-        // contains all valid field types + void
-        this.validMethodReturnTypes = new ArrayList<>(this.validFieldTypes);
-        this.validMethodReturnTypes.add(this.factory.Type().VOID_PRIMITIVE);
+        this.validMethodReturnTypes = new ArrayList<>();
+        this.classTypes = new HashMap<>();
+        resetTypes();
+
+        this.identifiers = new IdentifierGenerator(settings.identList());
+        this.typeNames = new FingerprintSet();
+        this.fieldNames = new FingerprintSet();
+        this.methodNames = new FingerprintSet();
+        this.parameterNames = new FingerprintSet();
+        this.memberIndices = new IdentityHashMap<>();
+    }
+
+    /**
+     * Creates a generator for a single class skeleton or method body, sharing the types of the parent.
+     */
+    private RandomSourceGenerator(RandomSourceGenerator parent, RandomGenerator random) {
+        this.random = random;
+        this.settings = parent.settings;
+        this.stats = parent.stats;
+        this.productions = parent.productions;
+        this.budget = parent.budget;
+        // not modified anymore once the type names exist
+        this.validFieldTypes = parent.validFieldTypes;
+        this.validMethodReturnTypes = parent.validMethodReturnTypes;
+        this.classTypes = parent.classTypes;
+        this.memberIndices = parent.memberIndices;
+
+        this.identifiers = new IdentifierGenerator(this.settings.identList());
+        this.typeNames = new FingerprintSet();
+        this.fieldNames = new FingerprintSet();
+        this.methodNames = new FingerprintSet();
+        this.parameterNames = new FingerprintSet();
     }
 
     @Override
-    public List<CtClass<?>> generateProgram() {
-        List<String> names = randomNames(this.random.nextInt(this.settings.maxTypes()), this::randomUpperCamelCase);
-        List<CtTypeReference<Object>> references = names.stream()
-                .map(n -> this.factory.Type().createReference(n))
-                .toList();
-        this.validFieldTypes.addAll(references);
-        this.validMethodReturnTypes.addAll(references);
-        List<CtClass<?>> classes = names.stream().distinct().map(this::generateClass).collect(Collectors.toList());
-        int w = classes.size();
-        for (CtClass<?> aClass : classes) {
-            // lazy fields before methods sort
-            var members = aClass.getTypeMembers().stream()
-                    .sorted(comparing(CtTypeMember::getClass, comparing(Class::getName)))
-                    .toList();
-            aClass.setTypeMembers(members);
-            for (CtMethod<?> method : aClass.getMethods()) {
-                method.setBody(generateBlock(
-                        new AccessContext(
-                                new ArrayList<>(),
-                                method.getParameters(),
-                                aClass,
-                                aClass,
-                                method.getType(),
-                                0
-                        ),
-                        method.getType()
-                ));
+    public List<ClassDeclaration> generateProgram() {
+        List<ClassDeclaration> classes = new ArrayList<>();
+        try {
+            generateProgram(new ProgramSink() {
+                private List<MethodDeclaration> methods;
+
+                @Override
+                public void startClass(ClassSkeleton skeleton) {
+                    this.methods = new ArrayList<>();
+                }
+
+                @Override
+                public void method(Method method, Block body) {
+                    this.methods.add(new MethodDeclaration(method, body));
+                }
+
+                @Override
+                public void endClass(ClassSkeleton skeleton) {
+                    classes.add(new ClassDeclaration(skeleton, this.methods));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // can't happen, we don't do IO here
+        }
+        return classes;
+    }
+
+    @Override
+    public List<ClassSkeleton> generateProgram(ProgramSink sink) throws IOException {
+        return generateProgram(sink, null);
+    }
+
+    /**
+     * Generates a program and passes it to the given sink, generating method bodies in parallel.
+     * <p>
+     * Every class skeleton and method body gets its own random generator, seeded from this generator and
+     * the position of the class and method. The result is therefore the same for any pool, or without one,
+     * and single methods can be regenerated with {@link #generateMethod(String, String, ProgramSink)}. Bodies are passed to the
+     * sink in order, and only a few are generated ahead of the sink, so memory usage stays bounded.
+     * With a size target bodies depend on the size of all bodies before them, so they are generated
+     * one after another regardless of the pool.
+     *
+     * @param sink the sink to pass the program to, only called from the current thread
+     * @param pool the pool to generate method bodies in, or {@code null} to generate them in the current thread
+     * @return the skeletons of all generated classes
+     * @throws IOException if the sink throws one
+     */
+    public List<ClassSkeleton> generateProgram(ProgramSink sink, ForkJoinPool pool) throws IOException {
+        if (this.settings.sizeTarget() != null) {
+            this.budget = new SizeBudget(this.settings.sizeTarget(), sink);
+            pool = null;
+        }
+        long startNanos = System.nanoTime();
+        long startAllocatedBytes = GenerationStats.allocatedBytes();
+        startLimits(startNanos);
+        List<ClassSkeleton> skeletons = generateSkeletons();
+        this.stats.endPhase(Phase.SKELETONS, startNanos, startAllocatedBytes);
+
+        List<BodyJob> jobs = new ArrayList<>();
+        for (int classIndex = 0; classIndex < skeletons.size(); classIndex++) {
+            ClassSkeleton skeleton = skeletons.get(classIndex);
+            List<Method> methods = skeleton.methods();
+            for (int methodIndex = 0; methodIndex < methods.size(); methodIndex++) {
+                jobs.add(bodyJob(classIndex, skeleton, methods.get(methodIndex), methodIndex));
             }
-            if (w > 0 && random.nextInt(w--) == 0) {
-                w = 0; // found
-                // used to prevent direct method/field accesses in static context - yes we're super lazy
-                CtClass<?> fakeTarget = factory.createClass();
-                CtMethod<?> mainMethod = factory.createMethod(
-                        aClass,
-                        Set.of(ModifierKind.PUBLIC, ModifierKind.STATIC),
-                        factory.Type().voidPrimitiveType(),
-                        "main",
-                        List.of(factory.createParameter(
-                                null,
-                                factory.Type().createArrayReference("String"),
-                                "args")
-                        ),
-                        Set.of());
-                addThrownTypes(mainMethod);
-                mainMethod.setBody(generateBlock(
-                        new AccessContext(
-                                new ArrayList<>(),
-                                new ArrayList<>(),
-                                fakeTarget,
-                                fakeTarget,
-                                factory.Type().voidPrimitiveType(),
-                                2
-                                ),
-                        factory.Type().voidPrimitiveType()
-                ));
-                aClass.addTypeMember(mainMethod);
+            if (classIndex == this.plan.mainClass()) {
+                jobs.add(bodyJob(classIndex, skeleton, this.plan.mainMethod(), methods.size()));
             }
         }
-        return classes;
+        shareNodes(jobs.size());
+
+        // bodies generated ahead of the sink
+        Deque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+        int window = pool == null ? 0 : pool.getParallelism() * 4;
+        int nextJob = 0;
+        int nextSubmittedJob = 0;
+        for (ClassSkeleton skeleton : skeletons) {
+            if (this.budget != null) {
+                this.budget.addClass(skeleton);
+            }
+            startNanos = System.nanoTime();
+            startAllocatedBytes = GenerationStats.allocatedBytes();
+            sink.startClass(skeleton);
+            this.stats.endPhase(Phase.PRINTING, startNanos, startAllocatedBytes);
+            while (nextJob < jobs.size() && jobs.get(nextJob).skeleton() == skeleton) {
+                BodyJob job = jobs.get(nextJob++);
+                startNanos = System.nanoTime();
+                Block body;
+                if (pool == null) {
+                    if (this.budget != null) {
+                        this.budget.startMethod(jobs.size() - nextJob + 1);
+                    }
+                    body = generateBody(job);
+                } else {
+                    while (nextSubmittedJob < jobs.size() && pending.size() < window) {
+                        BodyJob ahead = jobs.get(nextSubmittedJob++);
+                        pending.add(pool.submit(() -> generateBody(ahead)));
+                    }
+                    body = pending.removeFirst().join();
+                }
+                this.stats.addPhaseTime(Phase.BODIES, startNanos);
+                startNanos = System.nanoTime();
+                startAllocatedBytes = GenerationStats.allocatedBytes();
+                sink.method(job.method(), body);
+                this.stats.endPhase(Phase.PRINTING, startNanos, startAllocatedBytes);
+            }
+            startNanos = System.nanoTime();
+            startAllocatedBytes = GenerationStats.allocatedBytes();
+            sink.endClass(skeleton);
+            this.stats.endPhase(Phase.PRINTING, startNanos, startAllocatedBytes);
+        }
+        this.budget = null;
+        return skeletons;
+    }
+
+    /**
+     * Regenerates a single method of the program this generator would generate, and passes it to the given
+     * sink, in its class with only the fields. Only the type names, the skeleton of the class and the body
+     * of the method are generated, the printed method is the same as in the full program.
+     *
+     * @param className the name of the class declaring the method
+     * @param methodName the name of the method
+     * @param sink the sink to pass the method to
+     * @return false if the program has no such method
+     * @throws IOException if the sink throws one
+     */
+    public boolean generateMethod(String className, String methodName, ProgramSink sink) throws IOException {
+        if (this.settings.sizeTarget() != null) {
+            // bodies depend on the size of all bodies before them
+            throw new IllegalArgumentException("Single methods can't be regenerated with a size target");
+        }
+        startLimits(System.nanoTime());
+        List<String> typeNames = generateTypeNames();
+        int classIndex = typeNames.indexOf(className);
+        if (classIndex < 0) {
+            return false;
+        }
+        ClassSkeleton skeleton = generateClass(classIndex);
+        if (this.settings.limits().maxNodes() != GenerationLimits.NONE.maxNodes()) {
+            // the nodes are shared by all bodies, so the amount of methods of the other classes is needed too
+            int bodies = 1 + skeleton.methods().size();
+            for (int otherIndex = 0; otherIndex < typeNames.size(); otherIndex++) {
+                if (otherIndex != classIndex) {
+                    bodies += generateClass(otherIndex).methods().size();
+                }
+            }
+            shareNodes(bodies);
+        }
+        List<Method> methods = skeleton.methods();
+        BodyJob job = null;
+        for (int methodIndex = 0; methodIndex < methods.size() && job == null; methodIndex++) {
+            if (methods.get(methodIndex).name().equals(methodName)) {
+                job = bodyJob(classIndex, skeleton, methods.get(methodIndex), methodIndex);
+            }
+        }
+        if (job == null && classIndex == this.plan.mainClass() && methodName.equals("main")) {
+            job = bodyJob(classIndex, skeleton, this.plan.mainMethod(), methods.size());
+        }
+        if (job == null) {
+            return false;
+        }
+        ClassSkeleton fieldsOnly = new ClassSkeleton(skeleton.name(), skeleton.type(), skeleton.fields(), List.of());
+        sink.startClass(fieldsOnly);
+        long startNanos = System.nanoTime();
+        Block body = generateBody(job);
+        this.stats.addPhaseTime(Phase.BODIES, startNanos);
+        sink.method(job.method(), body);
+        sink.endClass(fieldsOnly);
+        return true;
+    }
+
+    private void startLimits(long startNanos) {
+        this.nodesPerBody = Long.MAX_VALUE;
+        Duration maxTime = this.settings.limits().maxTime();
+        if (maxTime != null) {
+            // saturated, a huge limit must not overflow into the past
+            this.deadlineNanos = startNanos + Math.min(maxTime.toNanos(), Long.MAX_VALUE / 2);
+        }
+    }
+
+    private void shareNodes(int bodies) {
+        this.nodesPerBody = this.settings.limits().maxNodes() / Math.max(1, bodies);
+    }
+
+    private BodyJob bodyJob(int classIndex, ClassSkeleton skeleton, Method method, int methodIndex) {
+        return new BodyJob(skeleton, method, Seeds.derive(this.plan.classSeed(classIndex), methodIndex));
+    }
+
+    /**
+     * Generates a body, possibly in a pool thread. Only the allocations are recorded here, the time is
+     * recorded by the thread generating the program, see {@link GenerationStats}.
+     */
+    private Block generateBody(BodyJob job) {
+        long startAllocatedBytes = GenerationStats.allocatedBytes();
+        RandomSourceGenerator generator = new RandomSourceGenerator(
+                this,
+                RandomGeneratorFactory.getDefault().create(job.seed())
+        );
+        GenerationLimits limits = this.settings.limits();
+        boolean limitsNodes = limits.maxNodes() != GenerationLimits.NONE.maxNodes();
+        // a maximum depth alone doesn't need a budget
+        if (limitsNodes || limits.maxTime() != null || this.budget != null) {
+            long nodes = limitsNodes ? this.nodesPerBody : Long.MAX_VALUE;
+            if (this.budget != null) {
+                // the last statement is cut off at the share of the size target, instead of overshooting it
+                nodes = Math.min(nodes, Math.max(0, this.budget.methodNodes()));
+            }
+            generator.nodeBudget = new NodeBudget(nodes, limits.maxTime() != null, this.deadlineNanos);
+        }
+        Method method = job.method();
+        AccessContext context;
+        if (method.isStatic()) {
+            // used to prevent direct method/field accesses in static context - yes we're super lazy
+            ClassSkeleton fakeTarget = new ClassSkeleton("", List.of(), List.of());
+            context = new AccessContext(
+                    new SymbolTable(List.of(), fakeTarget.fields()),
+                    fakeTarget,
+                    fakeTarget,
+                    Type.VOID,
+                    2
+            );
+        } else {
+            context = new AccessContext(
+                    new SymbolTable(method.parameters(), job.skeleton().fields()),
+                    job.skeleton(),
+                    job.skeleton(),
+                    method.returnType(),
+                    0
+            );
+        }
+        int maxDepth = limits.maxDepth();
+        Block body = maxDepth > 0
+                ? generator.new IterativeBodyGenerator(maxDepth).generateBody(context, method.returnType())
+                : generator.generateBlock(context, method.returnType());
+        this.stats.addPhaseAllocations(Phase.BODIES, startAllocatedBytes);
+        return body;
+    }
+
+    @Override
+    public List<ClassSkeleton> generateSkeletons() {
+        List<String> names = generateTypeNames();
+        List<ClassSkeleton> skeletons = new ArrayList<>(names.size());
+        for (int classIndex = 0; classIndex < names.size(); classIndex++) {
+            skeletons.add(generateClass(classIndex));
+        }
+        return skeletons;
+    }
+
+    /**
+     * Draws everything on the program level from this generator, the type names, the main method and the
+     * seed of the classes. Classes and their members are then generated from seeds derived from their index,
+     * so they don't depend on each other.
+     */
+    private List<String> generateTypeNames() {
+        int typeCount = this.budget != null
+                ? this.budget.plannedTypes(this.settings)
+                : this.random.nextInt(this.settings.maxTypes());
+        List<String> names = new ArrayList<>(typeCount);
+        for (int i = 0; i < typeCount; i++) {
+            names.add(this.identifiers.uniqueUpperCamelCase(this.random, randomNameLength(), this.typeNames));
+        }
+        List<Type> types = names.stream()
+                .map(n -> this.classTypes.computeIfAbsent(n, Type::named))
+                .toList();
+        // class types are twice as likely as field types, as they used to be added again with each class
+        this.validFieldTypes.addAll(types);
+        this.validFieldTypes.addAll(types);
+        this.validMethodReturnTypes.addAll(types);
+        int mainClass = -1;
+        Method mainMethod = null;
+        if (!names.isEmpty()) {
+            mainClass = this.random.nextInt(names.size());
+            mainMethod = new Method(
+                    "main",
+                    Type.VOID,
+                    List.of(new Parameter("args", Type.STRING.arrayOf(1))),
+                    generateThrownTypes(),
+                    true
+            );
+        }
+        this.plan = new ProgramPlan(names, mainClass, mainMethod, this.random.nextLong());
+        return names;
+    }
+
+    private ClassSkeleton generateClass(int classIndex) {
+        RandomSourceGenerator generator = new RandomSourceGenerator(
+                this,
+                RandomGeneratorFactory.getDefault().create(this.plan.classSeed(classIndex))
+        );
+        return generator.generateClass(this.plan.typeNames().get(classIndex));
+    }
+
+    /**
+     * Prepares this generator for another program, which is then the same as the program of a new generator
+     * with a {@link RandomGeneratorFactory#getDefault() default} random generator of the given seed. The
+     * production tables and the capacity of the name scopes are kept, so one generator can be reused for
+     * all programs of a thread. Must not be called while a program is generated.
+     *
+     * @param seed the seed of the next program
+     */
+    public void reset(long seed) {
+        this.random = RandomGeneratorFactory.getDefault().create(seed);
+        this.blockDepth = 0;
+        this.budget = null;
+        resetTypes();
+        this.typeNames.clear();
+        this.fieldNames.clear();
+        this.methodNames.clear();
+        this.parameterNames.clear();
+        this.memberIndices.clear();
+        this.plan = null;
+    }
+
+    private void resetTypes() {
+        this.validFieldTypes.clear();
+        this.validFieldTypes.addAll(List.of(
+                Type.INT,
+                Type.BOOLEAN
+        ));
+        // contains all valid field types + void
+        this.validMethodReturnTypes.clear();
+        this.validMethodReturnTypes.addAll(this.validFieldTypes);
+        this.validMethodReturnTypes.add(Type.VOID);
+        this.classTypes.clear();
     }
 
     @Override
-    public <T> CtClass<T> generateClass(String name) {
-        CtClass<T> ctClass = this.factory.Class().create(name);
-        this.validFieldTypes.add(ctClass.getReference());
+    public ClassSkeleton generateClass(String name) {
+        Type type = this.classTypes.get(name);
+        ClassSkeleton skeleton = new ClassSkeleton(name, type != null ? type : Type.named(name), new ArrayList<>(),
+                new ArrayList<>());
+        MemberIndex index = new MemberIndex(new TypeIndex<>(), new TypeIndex<>());
+        this.memberIndices.put(skeleton, index);
         int typeMembers = this.random.nextInt(this.settings.maxTypeMembers());
+        this.fieldNames.clear();
+        this.methodNames.clear();
         for (int i = 0; i < typeMembers; i++) {
-            CtTypeMember member = generateClassMember();
-            if (member instanceof CtField && ctClass.getField(member.getSimpleName()) != null
-                    || member instanceof CtMethod && !ctClass.getMethodsByName(member.getSimpleName()).isEmpty()) {
-                i--;
-                continue;
+            Member member = generateClassMember();
+            if (member instanceof Field field) {
+                if (!this.fieldNames.add(field.name())) {
+                    i--;
+                    continue;
+                }
+                skeleton.fields().add(field);
+                index.fields().add(field, field.type());
+            } else if (member instanceof Method method) {
+                if (!this.methodNames.add(method.name())) {
+                    i--;
+                    continue;
+                }
+                skeleton.methods().add(method);
+                index.methods().add(method, method.returnType());
             }
-            ctClass.addTypeMember(member);
         }
-        return ctClass;
+        return skeleton;
     }
 
     @Override
-    public CtTypeMember generateClassMember() {
+    public Member generateClassMember() {
         if (this.settings.fieldToMethodRatio() > this.random.nextDouble()) {
             return generateField();
         }
@@ -174,63 +510,59 @@ public class RandomSourceGenerator implements SourceGenerator {
     }
 
     @Override
-    public <T> CtField<T> generateField() {
-        CtField<T> ctField = this.factory.Core().createField();
-        ctField.setSimpleName(randomLowerCamelCase());
-        ctField.setType(generateType(false));
-        ctField.addModifier(ModifierKind.PUBLIC);
-        return ctField;
+    public Field generateField() {
+        String name = randomLowerCamelCase();
+        return new Field(name, generateType(false));
     }
 
     @Override
-    public <T> CtMethod<T> generateMethod() {
-        CtMethod<T> ctMethod = this.factory.Core().createMethod();
-        ctMethod.setSimpleName(randomLowerCamelCase());
-        ctMethod.setType(generateType(true));
-        List<CtParameter<?>> parameters = new ArrayList<>();
+    public Method generateMethod() {
+        String name = randomLowerCamelCase();
+        Type returnType = generateType(true);
+        List<Parameter> parameters = new ArrayList<>();
         int parameterCount = this.random.nextInt(this.settings.maxParameters());
-        List<String> parameterNames = randomNames(parameterCount, this::randomLowerCamelCase);
+        this.parameterNames.clear();
         for (int i = 0; i < parameterCount; i++) {
-            parameters.add(generateParameter(parameterNames.get(i)));
+            String parameterName = this.identifiers.uniqueLowerCamelCase(this.random, randomNameLength(), this.parameterNames);
+            parameters.add(generateParameter(parameterName));
         }
-        addThrownTypes(ctMethod);
-        ctMethod.setParameters(parameters);
-        ctMethod.addModifier(ModifierKind.PUBLIC);
         // body is added later, when method/field references of other classes are available
-        return ctMethod;
+        return new Method(name, returnType, parameters, generateThrownTypes(), false);
     }
 
-    private void addThrownTypes(CtMethod<?> method) {
+    private List<Type> generateThrownTypes() {
+        List<Type> thrownTypes = new ArrayList<>();
         while (this.random.nextDouble() < 0.1) {
-            method.addThrownType(this.factory.Type().createReference(randomUpperCamelCase()));
+            thrownTypes.add(Type.named(randomUpperCamelCase()));
         }
+        return thrownTypes;
     }
 
     @Override
-    public <T> CtParameter<T> generateParameter(String name) {
-        CtParameter<T> ctParameter = this.factory.Core().createParameter();
-        ctParameter.setType(generateType(false));
-        ctParameter.setSimpleName(name);
-        return ctParameter;
+    public Parameter generateParameter(String name) {
+        return new Parameter(name, generateType(false));
     }
 
     @Override
-    public <T> CtTypeReference<T> generateType(boolean voidAllowed) {
-        CtTypeReference<T> typeReference = fixGenerics(randomFromList(
+    public Type generateType(boolean voidAllowed) {
+        Type type = randomFromList(
                 voidAllowed
                         ? this.validMethodReturnTypes
                         : this.validFieldTypes
-        ));
-        if (!typeReference.equals(this.factory.Type().VOID_PRIMITIVE)
+        );
+        if (!type.equals(Type.VOID)
                 && this.random.nextDouble() < this.settings.arrayTypePercentage()) {
-            typeReference = toArrayTypeRef(typeReference);
+            type = toArrayType(type);
         }
-        return typeReference;
+        return type;
     }
 
     @Override
-    public CtStatement generateStatement(AccessContext context) {
-        return switch (randomStatementType()) {
+    public Statement generateStatement(AccessContext context) {
+        if (context.complexity() > GenerationLimits.RECURSIVE_DEPTH || !spendNode()) {
+            return generateEmptyStatement(context);
+        }
+        return switch (this.productions.sampleStatement(this.random)) {
             case LOCAL_VARIABLE_DECLARATION, RETURN -> generateStatement(context); // not allowed here, try again
             case EMPTY -> generateEmptyStatement(context);
             case WHILE -> generateWhileStatement(context.incrementComplexity());
@@ -241,29 +573,42 @@ public class RandomSourceGenerator implements SourceGenerator {
     }
 
     @Override
-    public <T> CtBlock<T> generateBlock(AccessContext context, CtTypeReference<?> returnType) {
-        AccessContext newContext = new AccessContext(
-                new ArrayList<>(context.localVariables()),
-                context.parameters(),
-                context.target(),
-                context.enclosingClass(),
-                context.returnType(),
-                context.complexity() + 1
-        );
-        CtBlock<T> ctBlock = this.factory.createBlock();
-        int statementCount = this.random.nextInt(this.settings.maxStatementsPerBlock());
-        for (int i = 0; i < statementCount; i++) {
-            ctBlock.addStatement(generateBlockStatement(newContext));
+    public Block generateBlock(AccessContext context, Type returnType) {
+        AccessContext newContext = context.incrementComplexity();
+        List<Statement> statements = new ArrayList<>();
+        // with a size target, method bodies grow until their share of the target is used up
+        SizeBudget budget = this.blockDepth == 0 ? this.budget : null;
+        int statementCount = budget != null
+                ? Integer.MAX_VALUE
+                : this.random.nextInt(this.settings.maxStatementsPerBlock());
+        // local variables declared in this block are not visible after it
+        context.symbols().pushScope();
+        this.stats.block(this.blockDepth++);
+        for (int i = 0; i < statementCount && (budget == null || !budget.isMethodFull()) && !isOutOfNodes(); i++) {
+            Statement statement = generateBlockStatement(newContext);
+            statements.add(statement);
+            if (budget != null) {
+                budget.addStatement(statement);
+            }
         }
-        if (context.complexity() == 0 && !this.factory.Type().VOID_PRIMITIVE.equals(returnType)) {
-            ctBlock.addStatement(generateReturnStatement(newContext, returnType));
+        if (context.complexity() == 0 && !Type.VOID.equals(returnType)) {
+            Statement returnStatement = generateReturnStatement(newContext, returnType);
+            statements.add(returnStatement);
+            if (budget != null) {
+                budget.addStatement(returnStatement);
+            }
         }
-        return ctBlock;
+        context.symbols().popScope();
+        this.blockDepth--;
+        return new Block(statements);
     }
 
     @Override
-    public CtStatement generateBlockStatement(AccessContext context) {
-        return switch (randomStatementType()) {
+    public Statement generateBlockStatement(AccessContext context) {
+        if (context.complexity() > GenerationLimits.RECURSIVE_DEPTH || !spendNode()) {
+            return generateEmptyStatement(context);
+        }
+        return switch (this.productions.sampleStatement(this.random)) {
             case LOCAL_VARIABLE_DECLARATION -> generateLocalVariableDeclarationStatement(context);
             case EMPTY -> generateEmptyStatement(context);
             case WHILE -> generateWhileStatement(context);
@@ -277,428 +622,396 @@ public class RandomSourceGenerator implements SourceGenerator {
     }
 
     @Override
-    public CtStatement generateLocalVariableDeclarationStatement(AccessContext context) {
+    public Statement generateLocalVariableDeclarationStatement(AccessContext context) {
         var type = generateType(false);
-        CtLocalVariable<Object> localVariable = this.factory.Code().createLocalVariable(
-                type,
-                randomLowerCamelCase(),
-                this.random.nextDouble() < 0.7 ? generateExpression(context, type) : null
-        );
-        context.localVariables().add(localVariable);
-        return localVariable;
+        var localVariable = new LocalVariable(randomLowerCamelCase(), type);
+        var initializer = this.random.nextDouble() < 0.7 ? generateExpression(context, type) : null;
+        context.symbols().declare(localVariable);
+        return new LocalVariableDeclaration(localVariable, initializer);
     }
 
     @Override
-    public CtStatement generateEmptyStatement(AccessContext context) {
-        return this.factory.Core().createCodeSnippetStatement();
+    public Statement generateEmptyStatement(AccessContext context) {
+        return EmptyStatement.INSTANCE;
     }
 
     @Override
-    public CtStatement generateWhileStatement(AccessContext context) {
-        CtWhile ctWhile = this.factory.createWhile();
-        ctWhile.setLoopingExpression(generateExpression(context, this.booleanType));
-        ctWhile.setBody(generateStatement(context));
-        return ctWhile;
+    public Statement generateWhileStatement(AccessContext context) {
+        Expression condition = generateExpression(context, Type.BOOLEAN);
+        return new WhileStatement(condition, generateStatement(context));
     }
 
     @Override
-    public CtStatement generateIfStatement(AccessContext context) {
-        CtIf ctIf = this.factory.createIf();
-        ctIf.setCondition(generateExpression(context, this.booleanType));
-        CtStatement thenStatement = generateStatement(context);
-        if (thenStatement instanceof CtBlock<?> block && block.getStatements().isEmpty()) {
-            thenStatement = null; // spoon #4240 workaround
-        }
-        ctIf.setThenStatement(thenStatement);
-        ctIf.setElseStatement(generateStatement(context));
-        return ctIf;
+    public Statement generateIfStatement(AccessContext context) {
+        Expression condition = generateExpression(context, Type.BOOLEAN);
+        Statement thenStatement = generateStatement(context);
+        return new IfStatement(condition, thenStatement, generateStatement(context));
     }
 
     @Override
-    public CtStatement generateExpressionStatement(AccessContext context) {
+    public Statement generateExpressionStatement(AccessContext context) {
         if (this.random.nextDouble() < 0.6) {
-            return generateMethodInvocation(context.incrementComplexity(), randomFromList(this.validMethodReturnTypes));
+            var invocation = generateMethodInvocation(context.incrementComplexity(), randomFromList(this.validMethodReturnTypes));
+            if (invocation == null) {
+                return generateEmptyStatement(context); // no method to call
+            }
+            return new ExpressionStatement(invocation);
         } else {
-            List<CtLocalVariable<?>> localVariables = context.localVariables();
-            List<CtParameter<?>> parameters = context.parameters();
-            List<CtField<?>> fields = context.enclosingClass().getFields();
-            var variables = concat(
-                    concat(localVariables.stream(), parameters.stream()),
-                    fields.stream())
-                    .toList();
-            if (variables.isEmpty()) {
-                return null; // can't do an assignment
+            SymbolTable symbols = context.symbols();
+            if (symbols.size() == 0) {
+                return generateEmptyStatement(context); // can't do an assignment
             }
-            CtVariable<?> variable = randomFromList(variables);
-            return this.factory.createVariableAssignment(variable.getReference(), false,
-                    generateExpression(context.incrementComplexity(), variable.getType()));
+            Variable variable = symbols.get(this.random.nextInt(symbols.size()));
+            return new ExpressionStatement(new Assignment(
+                    new VariableAccess(variable),
+                    generateExpression(context.incrementComplexity(), variable.type()),
+                    variable.type()
+            ));
         }
     }
 
     @Override
-    public CtStatement generateReturnStatement(AccessContext context, CtTypeReference<?> type) {
-        CtReturn<Object> ctReturn = this.factory.Core().createReturn();
-        if (!type.equals(this.factory.Type().VOID_PRIMITIVE)) {
-            ctReturn.setReturnedExpression(generateLogicalOrExpression(context, type));
+    public Statement generateReturnStatement(AccessContext context, Type type) {
+        if (type.equals(Type.VOID)) {
+            return new ReturnStatement(null);
         }
-        return ctReturn;
+        return new ReturnStatement(generateLogicalOrExpression(context, type));
     }
 
     @Override
-    public <T> CtExpression<T> generateExpression(AccessContext context, CtTypeReference<?> type) {
+    public Expression generateExpression(AccessContext context, Type type) {
+        this.stats.expression(context.complexity());
         return generateAssignmentExpression(context, type);
     }
 
     @Override
-    public <T> CtExpression<T> generateAssignmentExpression(AccessContext context, CtTypeReference<?> type) {
+    public Expression generateAssignmentExpression(AccessContext context, Type type) {
         // TODO
-        CtExpression<T> expression = generateLogicalOrExpression(context, type);
-        if (expression instanceof CtVariableAccess access
+        Expression expression = generateLogicalOrExpression(context, type);
+        if (isOutOfNodes()) {
+            return expression;
+        }
+        if (expression instanceof VariableAccess
                 && this.random.nextInt(context.complexity()) < context.complexity() / 2 + 1) {
-            //noinspection unchecked
-            return (CtExpression<T>) this.factory.createVariableAssignment(access.getVariable(), false,
-                            generateAssignmentExpression(context.incrementComplexity(), expression.getType()))
-                    .setType(type);
-        } else if (expression instanceof CtArrayAccess access
+            return new Assignment(
+                    expression,
+                    generateAssignmentExpression(context.incrementComplexity(), expression.type()),
+                    type
+            );
+        } else if (expression instanceof ArrayAccess
                 && this.random.nextInt(context.complexity()) < context.complexity() / 2 + 1) {
-            var assignment = this.factory.createAssignment();
-            //noinspection unchecked
-            assignment.setAssigned(access);
-            assignment.setAssignment(generateExpression(context.incrementComplexity(), access.getType()));
-            assignment.setType(fixGenerics(access.getType()));
-            //noinspection unchecked
-            return (CtExpression<T>) assignment;
+            return new Assignment(
+                    expression,
+                    generateExpression(context.incrementComplexity(), expression.type()),
+                    expression.type()
+            );
         }
         return expression;
     }
 
     @Override
-    public <T> CtExpression<T> generateLogicalOrExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.booleanType.equals(type) || this.random.nextDouble() > 0.15) {
+    public Expression generateLogicalOrExpression(AccessContext context, Type type) {
+        if (!Type.BOOLEAN.equals(type) || !this.productions.sampleOperator(OperatorLevel.LOGICAL_OR, this.random)) {
             return generateLogicalAndExpression(context, type);
         }
-        return this.factory.createBinaryOperator(
-                generateLogicalOrExpression(context, type),
-                generateLogicalAndExpression(context, type),
-                BinaryOperatorKind.OR
-        ).setType(fixGenerics(this.booleanType));
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        Expression left = generateLogicalOrExpression(context, type);
+        Expression right = generateLogicalAndExpression(context, type);
+        return new BinaryOperation(BinaryOperator.OR, left, right, Type.BOOLEAN);
     }
 
     @Override
-    public <T> CtExpression<T> generateLogicalAndExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.booleanType.equals(type) || this.random.nextDouble() > 0.09) {
+    public Expression generateLogicalAndExpression(AccessContext context, Type type) {
+        if (!Type.BOOLEAN.equals(type) || !this.productions.sampleOperator(OperatorLevel.LOGICAL_AND, this.random)) {
             return generateEqualityExpression(context, type);
         }
-        return this.factory.createBinaryOperator(
-                generateLogicalAndExpression(context, type),
-                generateEqualityExpression(context, type),
-                BinaryOperatorKind.AND
-        ).setType(fixGenerics(this.booleanType));
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        Expression left = generateLogicalAndExpression(context, type);
+        Expression right = generateEqualityExpression(context, type);
+        return new BinaryOperation(BinaryOperator.AND, left, right, Type.BOOLEAN);
     }
 
     @Override
-    public <T> CtExpression<T> generateEqualityExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.booleanType.equals(type) || this.random.nextDouble() > 0.08) {
+    public Expression generateEqualityExpression(AccessContext context, Type type) {
+        if (!Type.BOOLEAN.equals(type) || !this.productions.sampleOperator(OperatorLevel.EQUALITY, this.random)) {
             return generateRelationalExpression(context, type);
         }
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
         // must be same on both sides to be valid java code
-        CtTypeReference<?> equalityType = randomFromList(this.validFieldTypes);
+        Type equalityType = randomFromList(this.validFieldTypes);
         // we want some random array types in there
         while (this.random.nextDouble() < 0.05) {
-            equalityType = toArrayTypeRef(equalityType);
+            equalityType = toArrayType(equalityType);
         }
-        return this.factory.createBinaryOperator(
-                generateEqualityExpression(context, equalityType),
-                generateRelationalExpression(context, equalityType),
-                this.random.nextBoolean() ? BinaryOperatorKind.EQ : BinaryOperatorKind.NE
-        ).setType(fixGenerics(equalityType));
+        Expression left = generateEqualityExpression(context, equalityType);
+        Expression right = generateRelationalExpression(context, equalityType);
+        return new BinaryOperation(
+                this.random.nextBoolean() ? BinaryOperator.EQ : BinaryOperator.NE,
+                left,
+                right,
+                Type.BOOLEAN
+        );
     }
 
     @Override
-    public <T> CtExpression<T> generateRelationalExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.booleanType.equals(type) || this.random.nextDouble() > 0.15) {
+    public Expression generateRelationalExpression(AccessContext context, Type type) {
+        if (!Type.BOOLEAN.equals(type) || !this.productions.sampleOperator(OperatorLevel.RELATIONAL, this.random)) {
             return generateAdditiveExpression(context, type);
         }
-        BinaryOperatorKind[] relationalKinds = new BinaryOperatorKind[]{
-                BinaryOperatorKind.LT,
-                BinaryOperatorKind.LE,
-                BinaryOperatorKind.GT,
-                BinaryOperatorKind.GE,
-        };
-        return this.factory.createBinaryOperator(
-                generateRelationalExpression(context, this.intType),
-                generateAdditiveExpression(context, this.intType),
-                relationalKinds[this.random.nextInt(relationalKinds.length)]
-        ).setType(fixGenerics(this.intType));
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        Expression left = generateRelationalExpression(context, Type.INT);
+        Expression right = generateAdditiveExpression(context, Type.INT);
+        return new BinaryOperation(
+                RELATIONAL_OPERATORS[this.random.nextInt(RELATIONAL_OPERATORS.length)],
+                left,
+                right,
+                Type.BOOLEAN
+        );
     }
 
     @Override
-    public <T> CtExpression<T> generateAdditiveExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.intType.equals(type) || this.random.nextDouble() > 0.2) {
+    public Expression generateAdditiveExpression(AccessContext context, Type type) {
+        if (!Type.INT.equals(type) || !this.productions.sampleOperator(OperatorLevel.ADDITIVE, this.random)) {
             return generateMultiplicativeExpression(context, type);
         }
-        return this.factory.createBinaryOperator(
-                generateAdditiveExpression(context, this.intType),
-                generateMultiplicativeExpression(context, this.intType),
-                this.random.nextBoolean() ? BinaryOperatorKind.PLUS : BinaryOperatorKind.MINUS
-        ).setType(fixGenerics(this.intType));
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        Expression left = generateAdditiveExpression(context, Type.INT);
+        Expression right = generateMultiplicativeExpression(context, Type.INT);
+        return new BinaryOperation(
+                this.random.nextBoolean() ? BinaryOperator.PLUS : BinaryOperator.MINUS,
+                left,
+                right,
+                Type.INT
+        );
     }
 
     @Override
-    public <T> CtExpression<T> generateMultiplicativeExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.intType.equals(type) || this.random.nextDouble() > 0.1) {
+    public Expression generateMultiplicativeExpression(AccessContext context, Type type) {
+        if (!Type.INT.equals(type) || !this.productions.sampleOperator(OperatorLevel.MULTIPLICATIVE, this.random)) {
             return generateUnaryExpression(context, type);
         }
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
         var newContext = context.incrementComplexity();
-        return this.factory.createBinaryOperator(
-                generateMultiplicativeExpression(newContext, this.intType),
-                generateUnaryExpression(newContext, this.intType),
-                switch (this.random.nextInt(3)) {
-                    case 0 -> BinaryOperatorKind.MUL;
-                    case 1 -> BinaryOperatorKind.DIV;
-                    case 2 -> BinaryOperatorKind.MOD;
-                    default -> throw new IllegalArgumentException("???");
-                }
-        ).setType(fixGenerics(this.intType));
+        Expression left = generateMultiplicativeExpression(newContext, Type.INT);
+        Expression right = generateUnaryExpression(newContext, Type.INT);
+        return new BinaryOperation(
+                MULTIPLICATIVE_OPERATORS[this.random.nextInt(MULTIPLICATIVE_OPERATORS.length)],
+                left,
+                right,
+                Type.INT
+        );
     }
 
     @Override
-    public <T> CtExpression<T> generateUnaryExpression(AccessContext context, CtTypeReference<?> type) {
-        if (!this.intType.equals(type) || !this.booleanType.equals(type) || this.random.nextDouble() > 0.2) {
+    public Expression generateUnaryExpression(AccessContext context, Type type) {
+        if (!Type.INT.equals(type) && !Type.BOOLEAN.equals(type)
+                || !this.productions.sampleOperator(OperatorLevel.UNARY, this.random)) {
             return generatePostfixExpression(context, type);
         }
-        return this.factory.createUnaryOperator()
-                .<CtUnaryOperator<T>>setKind(type.equals(this.intType) ? UnaryOperatorKind.NEG : UnaryOperatorKind.NOT)
-                .<CtUnaryOperator<T>>setOperand(generateUnaryExpression(context.incrementComplexity(), type));
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        return new UnaryOperation(
+                type.equals(Type.INT) ? UnaryOperator.NEG : UnaryOperator.NOT,
+                generateUnaryExpression(context.incrementComplexity(), type)
+        );
     }
 
     @Override
-    public <T> CtExpression<T> generatePostfixExpression(AccessContext context, CtTypeReference<?> type) {
-        CtExpression<T> expression;
-        if (context.complexity() > 10
+    public Expression generatePostfixExpression(AccessContext context, Type type) {
+        Expression expression;
+        if (context.complexity() > GenerationLimits.RECURSIVE_DEPTH - 2
                 || (expression = generatePrimaryExpression(context, type)) == null
-                || expression.getType().equals(this.factory.Type().VOID_PRIMITIVE)
+                || expression.type().equals(Type.VOID)
         ) {
             return createLiteral(type, true);
         }
-        if (type.equals(expression.getType())
-                || expression.getType().equals(this.factory.Type().NULL_TYPE)
-                || expression.getType().equals(this.factory.Type().NULL_TYPE)
+        if (type.equals(expression.type())
+                || expression.type().equals(Type.NULL)
         ) {
             // TODO wrap again with probability? might be fun...
             return expression; // no PostfixOp on this needed
         }
-/*        if (expression.getType().isArray()) {
-            var arrayElementType = this.factory.Type()
-                    .get(expression.getType().getQualifiedName().replace("[]", ""));
-            if (arrayElementType != null) {
-                return expression;
-            }
-        }*/
-        // return createLiteral(type, true);
-        // TODO MAKE THIS WORK!!!
-        if (expression.getType().equals(this.intType)
-                || expression.getType().equals(this.booleanType)) {
+        if (expression.type().equals(Type.INT)
+                || expression.type().equals(Type.BOOLEAN)) {
             return createLiteral(type, true); // type is not correct and we can't fix it
         }
         expression = generatePostfixOp(expression, context.incrementComplexity(), type);
-        if (expression == null || !type.equals(expression.getType())) {
+        if (expression == null || !type.equals(expression.type())) {
             expression = createLiteral(type, true);
         }
         return expression;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <T> CtExpression<T> generatePostfixOp(CtExpression<?> target, AccessContext context, CtTypeReference<?> type) {
-        CtExpression<?> current = target;
+    public Expression generatePostfixOp(Expression target, AccessContext context, Type type) {
+        Expression current = target;
         // TODO limit?
         // loop is in here to have a proper context
-        while (target.getType().isArray() && !type.equals(current.getType())) {
-            var qualifiedName = current.getType().getQualifiedName();
-            if (current.getType().isArray() && qualifiedName.startsWith(type.getQualifiedName())) {
-                CtArrayAccess<Object, CtExpression<?>> arrayAccess =
-                        (CtArrayAccess<Object, CtExpression<?>>) generateArrayAccess(context.incrementComplexity(), type);
-                arrayAccess.setTarget(current);
-                current = arrayAccess;
-                current.setType(this.factory.Type().createReference(qualifiedName.substring(0, qualifiedName.lastIndexOf('['))));
+        while (target.type().isArray() && !type.equals(current.type())) {
+            if (current.type().isArrayOf(type)) {
+                current = generateArrayAccess(current, context.incrementComplexity());
             } else {
                 return null;
             }
         }
-        //noinspection unchecked
-        return (CtExpression<T>) current;
+        return current;
     }
 
     @Override
-    public <T> CtInvocation<T> generateMethodInvocation(AccessContext context, CtTypeReference<?> type) {
-        var methods = context.target().getMethods().stream().toList();
+    public MethodInvocation generateMethodInvocation(AccessContext context, Type type) {
+        var methods = context.target().methods();
         if (methods.isEmpty()) {
             return null; // can't do anything :(
         }
-        var correctlyTypedMethods = filterByType(methods, type, true);
+        var correctlyTypedMethods = memberIndex(context.target()).methods().get(type);
         if (!correctlyTypedMethods.isEmpty()) {
             // no method with this type found, we just return a different type then
             methods = correctlyTypedMethods;
         }
-        CtMethod<?> ctMethod = randomFromList(methods);
-        CtInvocation<T> invocation = this.factory.createInvocation();
-        invocation.setTarget(this.factory.createThisAccess(context.enclosingClass().getReference(), true));
-        //noinspection unchecked
-        invocation.setExecutable((CtExecutableReference<T>) ctMethod.getReference());
-        for (CtParameter<?> parameter : ctMethod.getParameters()) {
-            invocation.addArgument(generateArgument(context.incrementComplexity(), parameter.getType()));
+        Method method = randomFromList(methods);
+        List<Expression> arguments = new ArrayList<>(method.parameters().size());
+        for (Parameter parameter : method.parameters()) {
+            arguments.add(generateArgument(context.incrementComplexity(), parameter.type()));
         }
-        return invocation;
+        return new MethodInvocation(method, arguments);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <T> CtFieldAccess<T> generateFieldAccess(AccessContext context, CtTypeReference<?> type) {
-        var fields = context.target().getFields();
+    public Expression generateFieldAccess(AccessContext context, Type type) {
+        var fields = context.target().fields();
         if (fields.isEmpty()) {
             return null; // can't do anything :(
         }
-        var correctlyTypedFields = filterByType(fields, type, true);
+        var correctlyTypedFields = memberIndex(context.target()).fields().get(type);
         if (!correctlyTypedFields.isEmpty()) {
             // no method with this type found, we just return a different type then
             fields = correctlyTypedFields;
         }
-        CtField<?> field = randomFromList(fields);
-        CtFieldRead<T> fieldRead = this.factory.createFieldRead();
-        fieldRead.setVariable((CtVariableReference<T>) field.getReference());
-        return fieldRead;
+        return new VariableAccess(randomFromList(fields));
     }
 
     @Override
-    public <T> CtArrayAccess<T, ?> generateArrayAccess(AccessContext context, CtTypeReference<?> type) {
-        CtArrayRead<T> arrayRead = this.factory.createArrayRead();
-        arrayRead.setIndexExpression(generateExpression(context.incrementComplexity(), this.intType));
-        return arrayRead;
+    public ArrayAccess generateArrayAccess(Expression target, AccessContext context) {
+        spendNode(); // an array access can't fall back to a literal, but its index will
+        Expression index = generateExpression(context.incrementComplexity(), Type.INT);
+        return new ArrayAccess(target, index, target.type().elementType());
     }
 
     @Override
-    public <T> CtExpression<T> generateArgument(AccessContext context, CtTypeReference<?> type) {
+    public Expression generateArgument(AccessContext context, Type type) {
         return generateExpression(context.incrementComplexity(), type);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
-    public <T> CtExpression<T> generatePrimaryExpression(AccessContext context, CtTypeReference<?> type) {
-        double r = this.random.nextDouble();
-        if (r < 0.3 || context.complexity() > 12) {
+    public Expression generatePrimaryExpression(AccessContext context, Type type) {
+        // a production that doesn't apply to the type falls through to the next one
+        if (!spendNode()) {
+            return createLiteral(type, false);
+        }
+        PrimaryExpressionType production = this.productions.samplePrimaryExpression(this.random);
+        if (production.compareTo(PrimaryExpressionType.LITERAL) <= 0
+                || context.complexity() > GenerationLimits.RECURSIVE_DEPTH) {
             // literal
             return createLiteral(type, true);
-        } else if (r < 0.4
-                && !this.intType.equals(type)
-                && !this.booleanType.equals(type)
+        } else if (production.compareTo(PrimaryExpressionType.NEW_OBJECT) <= 0
+                && !Type.INT.equals(type)
+                && !Type.BOOLEAN.equals(type)
                 && (type == null || !type.isArray())
         ) {
             // new obj
             return generateNewObjectExpression(type); // can be of different type?
-        } else if (r < 0.5 && (type != null && type.isArray())) {
+        } else if (production.compareTo(PrimaryExpressionType.NEW_ARRAY) <= 0 && (type != null && type.isArray())) {
             // new array
             return generateNewArrayExpression(context, type);
-        } else if (r < 0.7) {
+        } else if (production.compareTo(PrimaryExpressionType.VARIABLE) <= 0) {
             // IDENT
-            // we differ from spec here, as spoon prints 'this.' for field accesses
-            // by default
-            // TODO?
-            List<CtLocalVariable<?>> localVariables = context.localVariables();
-            List<CtParameter<?>> parameters = context.parameters();
-            List<CtField<?>> fields = context.enclosingClass().getFields();
-            var variables = concat(
-                    concat(localVariables.stream(), parameters.stream()),
-                    fields.stream())
-                    .toList();
-            var correctlyTypedVariables = filterByType(variables, type, true);
-            CtVariable<?> variable;
-            if (!correctlyTypedVariables.isEmpty()) {
-                variable = randomFromList(correctlyTypedVariables);
-            } else if (!variables.isEmpty()) {
-                // well, lets get a different type then
-                variable = randomFromList(variables);
-            } else {
-                return createLiteral(type, true); // fallback
-            }
-            return (CtExpression<T>) this.factory.createVariableRead(variable.getReference(), false)
-                    .setType((CtTypeReference) variable.getType());
-        } else if (r < 0.8) {
+            return generateVariableAccess(context, type);
+        } else if (production.compareTo(PrimaryExpressionType.METHOD_INVOCATION) <= 0) {
             // IDENT (args)
             return generateMethodInvocation(context, type);
-        } else if (r < 0.9) {
+        } else if (production.compareTo(PrimaryExpressionType.THIS) <= 0) {
             // this
-            return (CtExpression<T>) this.factory.createThisAccess(context.enclosingClass().getReference());
-        } else if (r >= 0.9) {
+            return new ThisAccess(context.enclosingClass().type());
+        } else {
             // (expr)
             return generateExpression(context, type); // evil recursion?
+        }
+    }
+
+    private Expression generateVariableAccess(AccessContext context, Type type) {
+        // we differ from spec here, as fields are always accessed through 'this.'
+        // TODO?
+        SymbolTable symbols = context.symbols();
+        int correctlyTypedVariables = symbols.size(type);
+        Variable variable;
+        if (correctlyTypedVariables > 0) {
+            variable = symbols.get(type, this.random.nextInt(correctlyTypedVariables));
+        } else if (symbols.size() > 0) {
+            // well, lets get a different type then
+            variable = symbols.get(this.random.nextInt(symbols.size()));
         } else {
-            return createLiteral(type, false); // fallback
+            return createLiteral(type, true); // fallback
         }
+        return new VariableAccess(variable);
     }
 
     @Override
-    public <T> CtExpression<T> generateNewObjectExpression(CtTypeReference<?> type) {
-        CtTypeReference<?> newType = type != null ? type : randomFromList(this.validMethodReturnTypes);
+    public Expression generateNewObjectExpression(Type type) {
+        Type newType = type != null ? type : randomFromList(this.validMethodReturnTypes);
         // TODO avoid primitives here at all?
-        while (newType.equals(this.intType) || newType.equals(this.booleanType)) {
+        while (newType.equals(Type.INT) || newType.equals(Type.BOOLEAN)) {
             newType = randomFromList(this.validMethodReturnTypes);
         }
-        //noinspection unchecked
-        return (CtExpression<T>) this.factory.createConstructorCall(newType);
+        return new NewObject(newType);
     }
 
     @Override
-    public <T> CtExpression<T> generateNewArrayExpression(AccessContext context, CtTypeReference<?> type) {
-        CtNewArray<T> newArray = this.factory.createNewArray();
-        //noinspection unchecked
-        newArray.setType((CtTypeReference<T>) type);
-        newArray.addDimensionExpression(generateExpression(context, this.intType));
-        return newArray;
+    public Expression generateNewArrayExpression(AccessContext context, Type type) {
+        return new NewArray(type, generateExpression(context, Type.INT));
     }
 
-    private String randomUpperCamelCase() {
-        int approxLength = this.random.nextInt(1, this.settings.approximateNameLength());
-        String result = "";
-        while (result.length() < approxLength) {
-            //noinspection StringConcatenationInLoop
-            result += uppercaseFirst(randomName());
-        }
-        if (SourceVersion.isIdentifier(result)) {
-            return result;
-        }
-        return result + this.random.nextInt(0, 42);
+    /**
+     * Spends a node of the body's budget.
+     *
+     * @return {@code false} if the budget is exhausted, and a literal or an empty statement should be
+     *         generated instead
+     */
+    private boolean spendNode() {
+        return this.nodeBudget == null || this.nodeBudget.spend();
     }
 
-    private String randomLowerCamelCase() {
-        int approxLength = this.random.nextInt(1, this.settings.approximateNameLength());
-        String result = randomName();
-        while (result.length() < approxLength) {
-            //noinspection StringConcatenationInLoop
-            result += uppercaseFirst(randomName());
-        }
-        if (SourceVersion.isName(result)) {
-            return result;
-        }
-        return result + this.random.nextInt(0, 42);
+    private boolean isOutOfNodes() {
+        return this.nodeBudget != null && this.nodeBudget.isExhausted();
     }
 
-    private String uppercaseFirst(String s) {
-        if (s.length() == 1) {
-            return s;
-        }
-        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    private String randomUpperCamelCase() {
+        return this.identifiers.upperCamelCase(this.random, randomNameLength());
     }
 
-    private List<String> randomNames(int count, Supplier<String> nameFactory) {
-        return Stream.generate(nameFactory)
-                .distinct()
-                .limit(count)
-                .toList();
+    private String randomLowerCamelCase() {
+        return this.identifiers.lowerCamelCase(this.random, randomNameLength());
     }
 
-    private String randomName() {
-        return randomFromList(this.settings.identList());
+    private int randomNameLength() {
+        return this.random.nextInt(1, this.settings.approximateNameLength());
+    }
+
+    private MemberIndex memberIndex(ClassSkeleton skeleton) {
+        // classes that weren't generated here, like the fake target of main methods, have no members
+        return this.memberIndices.getOrDefault(skeleton, MemberIndex.EMPTY);
     }
 
     private <T> T randomFromList(List<T> elements) {
@@ -706,37 +1019,489 @@ public class RandomSourceGenerator implements SourceGenerator {
         return elements.get(index);
     }
 
-    private StatementType randomStatementType() {
-        return this.statementTypes.floorEntry(this.random.nextDouble(this.statementBound)).getValue();
+    private Type toArrayType(Type type) {
+        // TODO settings
+        return type.arrayOf(5 - (int) Math.sqrt(this.random.nextInt(1, 25)));
     }
 
-    private <V extends CtTypedElement<?>> List<V> filterByType(List<V> list, CtTypeReference<?> type, boolean allowArrays) {
-        return list.stream().filter(v -> v.getType().equals(type)
-                        || (allowArrays && v.getType().isArray() && v.getType().getQualifiedName().startsWith(type.getQualifiedName())))
-                .toList();
+    private Expression createLiteral(Type type, boolean random) {
+        if (Type.INT.equals(type)) {
+            return new IntegerLiteral(random ? this.random.nextInt() : 0);
+        } else if (Type.BOOLEAN.equals(type)) {
+            return new BooleanLiteral(random && this.random.nextBoolean());
+        } else {
+            return NullLiteral.INSTANCE;
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> CtTypeReference<T> toArrayTypeRef(CtTypeReference<?> reference) {
-        return (CtTypeReference<T>) this.factory.Type().createArrayReference(reference,
-                // TODO settings
-                5 - (int) Math.sqrt(this.random.nextInt(1, 25))
-        );
-    }
+    /**
+     * Generates method bodies with the same productions as the recursive methods above, but keeps the work left
+     * to do on an explicit stack instead of the call stack, so the nesting depth is only limited by the heap.
+     * <p>
+     * A production draws from the random generator when it runs, like its recursive counterpart, then pushes its
+     * children and a continuation onto the work stack. Children push their results onto the value stack, where
+     * the continuation pops them from to push its own result. Productions only call others as their last step,
+     * which doesn't nest deeper than the precedence levels.
+     * <p>
+     * Without a maximum depth, bodies are still generated recursively, which is considerably faster at the
+     * recursive depth. Both have to agree there, which the tests check for several grammar weights.
+     */
+    private final class IterativeBodyGenerator {
+        private final int maxDepth;
+        private final Deque<Runnable> work = new ArrayDeque<>();
+        // values may be null, like a missing initializer, which an ArrayDeque doesn't allow
+        private final List<Object> values = new ArrayList<>();
 
-    @SuppressWarnings("unchecked")
-    private <T> CtExpression<T> createLiteral(CtTypeReference<?> type, boolean random) {
-        if (this.intType.equals(type)) {
-            return (CtExpression<T>) this.factory.Code().createLiteral(random ? this.random.nextInt() : 0);
-        } else if (this.booleanType.equals(type)) {
-            return (CtExpression<T>) this.factory.Code().createLiteral(random && this.random.nextBoolean());
-        } else {
-            return this.factory.Code().createLiteral(null);
+        IterativeBodyGenerator(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+
+        Block generateBody(AccessContext context, Type returnType) {
+            block(context, returnType);
+            while (!this.work.isEmpty()) {
+                this.work.pop().run();
+            }
+            return pop();
+        }
+
+        /**
+         * Runs the given work after the currently running one, in order.
+         */
+        private void schedule(Runnable... items) {
+            for (int i = items.length - 1; i >= 0; i--) {
+                this.work.push(items[i]);
+            }
+        }
+
+        private void push(Object value) {
+            this.values.add(value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T pop() {
+            return (T) this.values.remove(this.values.size() - 1);
+        }
+
+        private boolean isTooDeep(AccessContext context) {
+            return context.complexity() > this.maxDepth;
+        }
+
+        private void block(AccessContext context, Type returnType) {
+            AccessContext newContext = context.incrementComplexity();
+            List<Statement> statements = new ArrayList<>();
+            // with a size target, method bodies grow until their share of the target is used up
+            SizeBudget budget = RandomSourceGenerator.this.blockDepth == 0 ? RandomSourceGenerator.this.budget : null;
+            int statementCount = budget != null
+                    ? Integer.MAX_VALUE
+                    : random.nextInt(settings.maxStatementsPerBlock());
+            // local variables declared in this block are not visible after it
+            context.symbols().pushScope();
+            stats.block(RandomSourceGenerator.this.blockDepth++);
+            Runnable end = () -> {
+                context.symbols().popScope();
+                RandomSourceGenerator.this.blockDepth--;
+                push(new Block(statements));
+            };
+            Runnable addStatement = () -> {
+                Statement statement = pop();
+                statements.add(statement);
+                if (budget != null) {
+                    budget.addStatement(statement);
+                }
+            };
+            schedule(new Runnable() {
+                private int i;
+
+                @Override
+                public void run() {
+                    if (this.i < statementCount && (budget == null || !budget.isMethodFull()) && !isOutOfNodes()) {
+                        this.i++;
+                        schedule(() -> blockStatement(newContext), addStatement, this);
+                    } else if (context.complexity() == 0 && !Type.VOID.equals(returnType)) {
+                        schedule(() -> returnStatement(newContext, returnType), addStatement, end);
+                    } else {
+                        end.run();
+                    }
+                }
+            });
+        }
+
+        private void statement(AccessContext context) {
+            if (isTooDeep(context) || !spendNode()) {
+                push(EmptyStatement.INSTANCE);
+                return;
+            }
+            switch (productions.sampleStatement(random)) {
+                case LOCAL_VARIABLE_DECLARATION, RETURN -> schedule(() -> statement(context)); // not allowed here
+                case EMPTY -> push(generateEmptyStatement(context));
+                case WHILE -> whileStatement(context.incrementComplexity());
+                case IF -> ifStatement(context.incrementComplexity());
+                case EXPRESSION -> expressionStatement(context);
+                case BLOCK -> block(context.incrementComplexity(), context.returnType());
+            }
+        }
+
+        private void blockStatement(AccessContext context) {
+            if (isTooDeep(context) || !spendNode()) {
+                push(EmptyStatement.INSTANCE);
+                return;
+            }
+            switch (productions.sampleStatement(random)) {
+                case LOCAL_VARIABLE_DECLARATION -> localVariableDeclaration(context);
+                case EMPTY -> push(generateEmptyStatement(context));
+                case WHILE -> whileStatement(context);
+                case IF -> ifStatement(context);
+                case EXPRESSION -> expressionStatement(context);
+                case RETURN -> {
+                    if (context.complexity() > 1) {
+                        returnStatement(context, context.returnType());
+                    } else {
+                        schedule(() -> blockStatement(context));
+                    }
+                }
+                case BLOCK -> schedule(() -> blockStatement(context));
+            }
+        }
+
+        private void localVariableDeclaration(AccessContext context) {
+            Type type = generateType(false);
+            LocalVariable localVariable = new LocalVariable(randomLowerCamelCase(), type);
+            Runnable declare = () -> {
+                Expression initializer = pop();
+                context.symbols().declare(localVariable);
+                push(new LocalVariableDeclaration(localVariable, initializer));
+            };
+            if (random.nextDouble() < 0.7) {
+                schedule(() -> expression(context, type), declare);
+            } else {
+                push(null);
+                declare.run();
+            }
+        }
+
+        private void whileStatement(AccessContext context) {
+            schedule(
+                    () -> expression(context, Type.BOOLEAN),
+                    () -> statement(context),
+                    () -> {
+                        Statement body = pop();
+                        Expression condition = pop();
+                        push(new WhileStatement(condition, body));
+                    }
+            );
+        }
+
+        private void ifStatement(AccessContext context) {
+            schedule(
+                    () -> expression(context, Type.BOOLEAN),
+                    () -> statement(context),
+                    () -> statement(context),
+                    () -> {
+                        Statement elseStatement = pop();
+                        Statement thenStatement = pop();
+                        Expression condition = pop();
+                        push(new IfStatement(condition, thenStatement, elseStatement));
+                    }
+            );
+        }
+
+        private void expressionStatement(AccessContext context) {
+            if (random.nextDouble() < 0.6) {
+                Type type = randomFromList(validMethodReturnTypes);
+                schedule(() -> methodInvocation(context.incrementComplexity(), type), () -> {
+                    MethodInvocation invocation = pop();
+                    // no method to call
+                    push(invocation == null ? generateEmptyStatement(context) : new ExpressionStatement(invocation));
+                });
+            } else {
+                SymbolTable symbols = context.symbols();
+                if (symbols.size() == 0) {
+                    push(generateEmptyStatement(context)); // can't do an assignment
+                    return;
+                }
+                Variable variable = symbols.get(random.nextInt(symbols.size()));
+                schedule(() -> expression(context.incrementComplexity(), variable.type()), () -> push(
+                        new ExpressionStatement(new Assignment(new VariableAccess(variable), pop(), variable.type()))
+                ));
+            }
+        }
+
+        private void returnStatement(AccessContext context, Type type) {
+            if (type.equals(Type.VOID)) {
+                push(new ReturnStatement(null));
+                return;
+            }
+            schedule(() -> logicalOr(context, type), () -> push(new ReturnStatement(pop())));
+        }
+
+        private void expression(AccessContext context, Type type) {
+            stats.expression(context.complexity());
+            assignment(context, type);
         }
+
+        private void assignment(AccessContext context, Type type) {
+            schedule(() -> logicalOr(context, type), () -> {
+                Expression expression = pop();
+                if (isOutOfNodes()) {
+                    push(expression);
+                } else if (expression instanceof VariableAccess
+                        && random.nextInt(context.complexity()) < context.complexity() / 2 + 1) {
+                    schedule(
+                            () -> assignment(context.incrementComplexity(), expression.type()),
+                            () -> push(new Assignment(expression, pop(), type))
+                    );
+                } else if (expression instanceof ArrayAccess
+                        && random.nextInt(context.complexity()) < context.complexity() / 2 + 1) {
+                    schedule(
+                            () -> expression(context.incrementComplexity(), expression.type()),
+                            () -> push(new Assignment(expression, pop(), expression.type()))
+                    );
+                } else {
+                    push(expression);
+                }
+            });
+        }
+
+        private void logicalOr(AccessContext context, Type type) {
+            if (!Type.BOOLEAN.equals(type) || !productions.sampleOperator(OperatorLevel.LOGICAL_OR, random)) {
+                logicalAnd(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                schedule(
+                        () -> logicalOr(context, type),
+                        () -> logicalAnd(context, type),
+                        () -> binaryOperation(BinaryOperator.OR, Type.BOOLEAN)
+                );
+            }
+        }
+
+        private void logicalAnd(AccessContext context, Type type) {
+            if (!Type.BOOLEAN.equals(type) || !productions.sampleOperator(OperatorLevel.LOGICAL_AND, random)) {
+                equality(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                schedule(
+                        () -> logicalAnd(context, type),
+                        () -> equality(context, type),
+                        () -> binaryOperation(BinaryOperator.AND, Type.BOOLEAN)
+                );
+            }
+        }
+
+        private void equality(AccessContext context, Type type) {
+            if (!Type.BOOLEAN.equals(type) || !productions.sampleOperator(OperatorLevel.EQUALITY, random)) {
+                relational(context, type);
+                return;
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+                return;
+            }
+            // must be same on both sides to be valid java code
+            Type randomType = randomFromList(validFieldTypes);
+            // we want some random array types in there
+            while (random.nextDouble() < 0.05) {
+                randomType = toArrayType(randomType);
+            }
+            Type equalityType = randomType;
+            schedule(
+                    () -> equality(context, equalityType),
+                    () -> relational(context, equalityType),
+                    () -> binaryOperation(random.nextBoolean() ? BinaryOperator.EQ : BinaryOperator.NE, Type.BOOLEAN)
+            );
+        }
+
+        private void relational(AccessContext context, Type type) {
+            if (!Type.BOOLEAN.equals(type) || !productions.sampleOperator(OperatorLevel.RELATIONAL, random)) {
+                additive(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                schedule(
+                        () -> relational(context, Type.INT),
+                        () -> additive(context, Type.INT),
+                        () -> binaryOperation(
+                                RELATIONAL_OPERATORS[random.nextInt(RELATIONAL_OPERATORS.length)],
+                                Type.BOOLEAN
+                        )
+                );
+            }
+        }
+
+        private void additive(AccessContext context, Type type) {
+            if (!Type.INT.equals(type) || !productions.sampleOperator(OperatorLevel.ADDITIVE, random)) {
+                multiplicative(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                schedule(
+                        () -> additive(context, Type.INT),
+                        () -> multiplicative(context, Type.INT),
+                        () -> binaryOperation(
+                                random.nextBoolean() ? BinaryOperator.PLUS : BinaryOperator.MINUS,
+                                Type.INT
+                        )
+                );
+            }
+        }
+
+        private void multiplicative(AccessContext context, Type type) {
+            if (!Type.INT.equals(type) || !productions.sampleOperator(OperatorLevel.MULTIPLICATIVE, random)) {
+                unary(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                AccessContext newContext = context.incrementComplexity();
+                schedule(
+                        () -> multiplicative(newContext, Type.INT),
+                        () -> unary(newContext, Type.INT),
+                        () -> binaryOperation(
+                                MULTIPLICATIVE_OPERATORS[random.nextInt(MULTIPLICATIVE_OPERATORS.length)],
+                                Type.INT
+                        )
+                );
+            }
+        }
+
+        private void binaryOperation(BinaryOperator operator, Type type) {
+            Expression right = pop();
+            Expression left = pop();
+            push(new BinaryOperation(operator, left, right, type));
+        }
+
+        private void unary(AccessContext context, Type type) {
+            if (!Type.INT.equals(type) && !Type.BOOLEAN.equals(type)
+                    || !productions.sampleOperator(OperatorLevel.UNARY, random)) {
+                postfix(context, type);
+            } else if (!spendNode()) {
+                push(createLiteral(type, false));
+            } else {
+                UnaryOperator operator = type.equals(Type.INT) ? UnaryOperator.NEG : UnaryOperator.NOT;
+                schedule(
+                        () -> unary(context.incrementComplexity(), type),
+                        () -> push(new UnaryOperation(operator, pop()))
+                );
+            }
+        }
+
+        private void postfix(AccessContext context, Type type) {
+            if (context.complexity() > this.maxDepth - 2) {
+                push(createLiteral(type, true));
+                return;
+            }
+            schedule(() -> primary(context, type), () -> {
+                Expression expression = pop();
+                if (expression == null || expression.type().equals(Type.VOID)) {
+                    push(createLiteral(type, true));
+                } else if (type.equals(expression.type()) || expression.type().equals(Type.NULL)) {
+                    push(expression); // no PostfixOp on this needed
+                } else if (expression.type().equals(Type.INT) || expression.type().equals(Type.BOOLEAN)) {
+                    push(createLiteral(type, true)); // type is not correct and we can't fix it
+                } else {
+                    schedule(() -> postfixOp(expression, expression, context.incrementComplexity(), type), () -> {
+                        Expression access = pop();
+                        push(access == null || !type.equals(access.type()) ? createLiteral(type, true) : access);
+                    });
+                }
+            });
+        }
+
+        private void postfixOp(Expression target, Expression current, AccessContext context, Type type) {
+            if (!target.type().isArray() || type.equals(current.type())) {
+                push(current);
+            } else if (current.type().isArrayOf(type)) {
+                schedule(
+                        () -> arrayAccess(current, context.incrementComplexity()),
+                        () -> postfixOp(target, pop(), context, type)
+                );
+            } else {
+                push(null);
+            }
+        }
+
+        private void arrayAccess(Expression target, AccessContext context) {
+            spendNode(); // an array access can't fall back to a literal, but its index will
+            schedule(
+                    () -> expression(context.incrementComplexity(), Type.INT),
+                    () -> push(new ArrayAccess(target, pop(), target.type().elementType()))
+            );
+        }
+
+        private void methodInvocation(AccessContext context, Type type) {
+            var methods = context.target().methods();
+            if (methods.isEmpty()) {
+                push(null); // can't do anything :(
+                return;
+            }
+            var correctlyTypedMethods = memberIndex(context.target()).methods().get(type);
+            if (!correctlyTypedMethods.isEmpty()) {
+                // no method with this type found, we just return a different type then
+                methods = correctlyTypedMethods;
+            }
+            Method method = randomFromList(methods);
+            List<Parameter> parameters = method.parameters();
+            Runnable[] items = new Runnable[parameters.size() + 1];
+            for (int i = 0; i < parameters.size(); i++) {
+                Type parameterType = parameters.get(i).type();
+                // like generateArgument, which increments the complexity once more
+                items[i] = () -> expression(context.incrementComplexity().incrementComplexity(), parameterType);
+            }
+            items[parameters.size()] = () -> {
+                Expression[] arguments = new Expression[parameters.size()];
+                for (int i = arguments.length - 1; i >= 0; i--) {
+                    arguments[i] = pop();
+                }
+                push(new MethodInvocation(method, List.of(arguments)));
+            };
+            schedule(items);
+        }
+
+        private void primary(AccessContext context, Type type) {
+            if (!spendNode()) {
+                push(createLiteral(type, false));
+                return;
+            }
+            // a production that doesn't apply to the type falls through to the next one
+            PrimaryExpressionType production = productions.samplePrimaryExpression(random);
+            if (production.compareTo(PrimaryExpressionType.LITERAL) <= 0 || context.complexity() > this.maxDepth) {
+                push(createLiteral(type, true));
+            } else if (production.compareTo(PrimaryExpressionType.NEW_OBJECT) <= 0
+                    && !Type.INT.equals(type)
+                    && !Type.BOOLEAN.equals(type)
+                    && (type == null || !type.isArray())
+            ) {
+                push(generateNewObjectExpression(type));
+            } else if (production.compareTo(PrimaryExpressionType.NEW_ARRAY) <= 0 && (type != null && type.isArray())) {
+                schedule(() -> expression(context, Type.INT), () -> push(new NewArray(type, pop())));
+            } else if (production.compareTo(PrimaryExpressionType.VARIABLE) <= 0) {
+                push(generateVariableAccess(context, type));
+            } else if (production.compareTo(PrimaryExpressionType.METHOD_INVOCATION) <= 0) {
+                methodInvocation(context, type);
+            } else if (production.compareTo(PrimaryExpressionType.THIS) <= 0) {
+                push(new ThisAccess(context.enclosingClass().type()));
+            } else {
+                // (expr)
+                expression(context, type);
+            }
+        }
+    }
+
+    private record MemberIndex(TypeIndex<Field> fields, TypeIndex<Method> methods) {
+        static final MemberIndex EMPTY = new MemberIndex(new TypeIndex<>(), new TypeIndex<>());
     }
 
-    @SuppressWarnings("unchecked")
-    private static <T> CtTypeReference<T> fixGenerics(CtTypeReference<?> type) {
-        return (CtTypeReference<T>) type;
+    private record BodyJob(ClassSkeleton skeleton, Method method, long seed) {
+    }
+
+    /**
+     * The decisions on the program level. The skeleton of a class is generated from its class seed, the
+     * body of its n-th method from the class seed derived with n.
+     */
+    private record ProgramPlan(List<String> typeNames, int mainClass, Method mainMethod, long classesSeed) {
+
+        long classSeed(int classIndex) {
+            return Seeds.derive(this.classesSeed, classIndex);
+        }
     }
 }
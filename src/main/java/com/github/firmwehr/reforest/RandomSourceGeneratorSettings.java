@@ -1,6 +1,10 @@
 package com.github.firmwehr.reforest;
 
+import com.github.firmwehr.reforest.util.WordList;
+
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 public record RandomSourceGeneratorSettings(
         double fieldToMethodRatio,
@@ -10,9 +14,93 @@ public record RandomSourceGeneratorSettings(
         int maxTypes,
         int maxParameters,
         int maxStatementsPerBlock,
-        List<String> identList,
-        List<WeightedStatementType> statementWeights
+        WordList identList,
+        List<WeightedStatementType> statementWeights,
+        List<WeightedPrimaryExpressionType> primaryExpressionWeights,
+        Map<OperatorLevel, Double> operatorProbabilities,
+        SizeTarget sizeTarget,
+        GenerationLimits limits
 ) {
 
+    /**
+     * Creates settings without {@link GenerationLimits}.
+     */
+    public RandomSourceGeneratorSettings(
+            double fieldToMethodRatio,
+            double arrayTypePercentage,
+            int approximateNameLength,
+            int maxTypeMembers,
+            int maxTypes,
+            int maxParameters,
+            int maxStatementsPerBlock,
+            WordList identList,
+            List<WeightedStatementType> statementWeights,
+            List<WeightedPrimaryExpressionType> primaryExpressionWeights,
+            Map<OperatorLevel, Double> operatorProbabilities,
+            SizeTarget sizeTarget
+    ) {
+        this(fieldToMethodRatio, arrayTypePercentage, approximateNameLength, maxTypeMembers, maxTypes, maxParameters,
+                maxStatementsPerBlock, identList, statementWeights, primaryExpressionWeights, operatorProbabilities,
+                sizeTarget, GenerationLimits.NONE);
+    }
+
     public record WeightedStatementType(double weight, StatementType type) { }
+
+    public record WeightedPrimaryExpressionType(double weight, PrimaryExpressionType type) { }
+
+    /**
+     * The approximate size of generated programs. Without a target, sizes only follow the limits of the
+     * settings. With one, {@link #maxTypes()} is ignored and top-level blocks grow until the target is met.
+     *
+     * @param unit what the size is measured in
+     * @param size the size to generate
+     */
+    public record SizeTarget(Unit unit, long size) {
+
+        public SizeTarget {
+            if (size <= 0) {
+                throw new IllegalArgumentException("The target size must be positive, was %d".formatted(size));
+            }
+        }
+
+        public enum Unit {
+            NODES,
+            BYTES,
+        }
+    }
+
+    /**
+     * Hard limits on the work spent on a program, so every program is generated in bounded time, regardless of
+     * how deep the grammar recurses for its seed. Once a method body hits a limit, it is completed with literals
+     * and empty statements.
+     * <p>
+     * The nodes are shared evenly by the method bodies of a program, so programs hitting the node limit are still
+     * the same for every seed. The time limit is only a safety net, programs hitting it depend on the machine.
+     * <p>
+     * With a maximum depth, method bodies are generated with an explicit work stack instead of recursion, so the
+     * depth is only limited by the heap. Statements nested deeper become empty statements and expressions
+     * literals. Without one, the recursive generator limits the depth of statements and expressions to
+     * {@value #RECURSIVE_DEPTH} the same way, so both generate the same bodies at that depth.
+     *
+     * @param maxNodes the amount of statement and expression nodes of all method bodies of a program
+     * @param maxTime the time after which generating a program is cut short, or {@code null}
+     * @param maxDepth the maximum nesting depth of statements and expressions, or {@code 0} to generate
+     *                 bodies recursively
+     */
+    public record GenerationLimits(long maxNodes, Duration maxTime, int maxDepth) {
+        public static final GenerationLimits NONE = new GenerationLimits(Long.MAX_VALUE, null, 0);
+        public static final int RECURSIVE_DEPTH = 12;
+
+        public GenerationLimits {
+            if (maxNodes <= 0) {
+                throw new IllegalArgumentException("The node limit must be positive, was %d".formatted(maxNodes));
+            }
+            if (maxTime != null && (maxTime.isNegative() || maxTime.isZero())) {
+                throw new IllegalArgumentException("The time limit must be positive, was %s".formatted(maxTime));
+            }
+            if (maxDepth < 0) {
+                throw new IllegalArgumentException("The maximum depth must not be negative, was %d".formatted(maxDepth));
+            }
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.Options.NonExistentFileConverter;
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.nio.file.Path;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+@Command(
+        name = "reduce",
+        description = "Reduces a generated program while a command considers it interesting. The program is "
+                + "generated from the options after '--', which are the same as for generating it"
+)
+public interface ReduceOptions {
+
+    @Option(
+            names = {"--command", "-c"},
+            paramLabel = "COMMAND",
+            description = "The command testing whether a program is interesting, split at whitespace. "
+                    + "The path of the program is appended as last argument"
+    )
+    String command();
+
+    @Option(
+            names = {"--exit-code", "-e"},
+            paramLabel = "INTEGER",
+            description = "The exit code of the command for interesting programs"
+    )
+    int exitCode();
+
+    @Option(
+            names = "--timeout",
+            paramLabel = "SECONDS",
+            description = "The time after which the command is killed, the program then isn't interesting. "
+                    + "Defaults to 60 seconds"
+    )
+    OptionalLong timeoutSeconds();
+
+    @Option(
+            names = {"--output", "-o"},
+            paramLabel = "PATH",
+            converter = NonExistentFileConverter.class,
+            description = "The path of the file to write the reduced program to"
+    )
+    Path outputPath();
+
+    @Option(
+            names = {"--threads", "-t"},
+            paramLabel = "INTEGER",
+            description = "The amount of candidates to test in parallel. Defaults to the number of available processors"
+    )
+    OptionalInt threads();
+}
@@ -0,0 +1,37 @@
+package com.github.firmwehr.reforest;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+@Command(
+        name = "serve",
+        description = "Generates programs on request, read from stdin or a Unix domain socket. The settings are "
+                + "taken from the options after '--', which are the same as for generating a single program"
+)
+public interface ServeOptions {
+
+    @Option(
+            names = "--socket",
+            paramLabel = "PATH",
+            description = "The path of a Unix domain socket to accept connections on, instead of using stdin and stdout"
+    )
+    Optional<Path> socketPath();
+
+    @Option(
+            names = {"--threads", "-t"},
+            paramLabel = "INTEGER",
+            description = "The amount of programs to generate in parallel. Defaults to the number of available processors"
+    )
+    OptionalInt threads();
+
+    @Option(
+            names = "--warm-up",
+            paramLabel = "INTEGER",
+            description = "The amount of programs to generate before accepting requests. Defaults to 20"
+    )
+    OptionalInt warmUpPrograms();
+}
@@ -0,0 +1,160 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.SizeTarget;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks the size of a program generated towards a {@link SizeTarget}.
+ * <p>
+ * The size is measured in nodes: every class, field, method, parameter, statement and expression is
+ * one node. For byte targets the remaining bytes are converted to nodes with the ratio of chars per
+ * node printed so far, so the estimate gets better with every method.
+ * <p>
+ * The amount of classes is planned up front from rough estimates. Each method body then gets an even
+ * share of what is left and generates top-level statements until the share is used up, the last statement
+ * being cut off at the share. Earlier deviations are compensated by later methods.
+ * <p>
+ * From 100,000 bytes or 10,000 nodes on, programs end within 4% of the target, larger targets closer. Smaller
+ * targets are dominated by the declarations, which are planned from the rough estimates only, and may be off by
+ * a multiple of the target.
+ */
+final class SizeBudget {
+    // from programs generated with the default settings
+    private static final double NODES_PER_STATEMENT = 15;
+    private static final double CHARS_PER_NODE = 11;
+
+    private final SizeTarget target;
+    private final ProgramSink sink;
+    private long nodes;
+    private long methodNodes;
+
+    SizeBudget(SizeTarget target, ProgramSink sink) {
+        this.target = target;
+        this.sink = sink;
+    }
+
+    /**
+     * {@return the amount of classes to generate}
+     *
+     * @param settings the settings the classes are generated with
+     */
+    int plannedTypes(RandomSourceGeneratorSettings settings) {
+        double nodesPerMethod = NODES_PER_STATEMENT * settings.maxStatementsPerBlock() / 2.0;
+        double methodsPerType = Math.max(1, (settings.maxTypeMembers() - 1) / 2.0 * (1 - settings.fieldToMethodRatio()));
+        double types = remainingNodes() / nodesPerMethod / methodsPerType;
+        return (int) Math.max(1, Math.min(Math.round(types), Integer.MAX_VALUE));
+    }
+
+    void addClass(ClassSkeleton skeleton) {
+        long declarations = 1 + skeleton.fields().size();
+        for (Method method : skeleton.methods()) {
+            declarations += 1 + method.parameters().size();
+        }
+        this.nodes += declarations;
+    }
+
+    /**
+     * Starts a method body, giving it an even share of the remaining size.
+     *
+     * @param remainingMethods the amount of method bodies left, including this one
+     */
+    void startMethod(int remainingMethods) {
+        this.methodNodes = remainingNodes() / Math.max(1, remainingMethods);
+    }
+
+    /**
+     * {@return the nodes left of the share of the current method body}
+     */
+    long methodNodes() {
+        return this.methodNodes;
+    }
+
+    boolean isMethodFull() {
+        return this.methodNodes <= 0;
+    }
+
+    void addStatement(Statement statement) {
+        int count = countNodes(statement);
+        this.nodes += count;
+        this.methodNodes -= count;
+    }
+
+    private long remainingNodes() {
+        return switch (this.target.unit()) {
+            case NODES -> this.target.size() - this.nodes;
+            case BYTES -> {
+                long written = this.sink.writtenChars();
+                if (written <= 0 || this.nodes == 0) {
+                    yield (long) (this.target.size() / CHARS_PER_NODE) - this.nodes;
+                }
+                yield (long) ((this.target.size() - written) / ((double) written / this.nodes));
+            }
+        };
+    }
+
+    static int countNodes(Statement statement) {
+        // with a work stack instead of recursion, as statements may be nested very deep
+        Deque<Object> work = new ArrayDeque<>();
+        work.push(statement);
+        int count = 0;
+        while (!work.isEmpty()) {
+            Object node = work.pop();
+            count++;
+            if (node instanceof Block block) {
+                block.statements().forEach(work::push);
+            } else if (node instanceof LocalVariableDeclaration declaration) {
+                pushIfPresent(declaration.initializer(), work);
+            } else if (node instanceof WhileStatement whileStatement) {
+                work.push(whileStatement.condition());
+                work.push(whileStatement.body());
+            } else if (node instanceof IfStatement ifStatement) {
+                work.push(ifStatement.condition());
+                work.push(ifStatement.thenStatement());
+                pushIfPresent(ifStatement.elseStatement(), work);
+            } else if (node instanceof ExpressionStatement expressionStatement) {
+                work.push(expressionStatement.expression());
+            } else if (node instanceof ReturnStatement returnStatement) {
+                pushIfPresent(returnStatement.value(), work);
+            } else if (node instanceof BinaryOperation operation) {
+                work.push(operation.left());
+                work.push(operation.right());
+            } else if (node instanceof UnaryOperation operation) {
+                work.push(operation.operand());
+            } else if (node instanceof Assignment assignment) {
+                work.push(assignment.target());
+                work.push(assignment.value());
+            } else if (node instanceof ArrayAccess arrayAccess) {
+                work.push(arrayAccess.array());
+                work.push(arrayAccess.index());
+            } else if (node instanceof MethodInvocation invocation) {
+                invocation.arguments().forEach(work::push);
+            } else if (node instanceof NewArray newArray) {
+                work.push(newArray.size());
+            }
+        }
+        return count;
+    }
+
+    private static void pushIfPresent(Object node, Deque<Object> work) {
+        if (node != null) {
+            work.push(node);
+        }
+    }
+}
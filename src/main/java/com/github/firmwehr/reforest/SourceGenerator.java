@@ -1,104 +1,121 @@
 package com.github.firmwehr.reforest;
 
-import spoon.reflect.code.CtArrayAccess;
-import spoon.reflect.code.CtBlock;
-import spoon.reflect.code.CtExpression;
-import spoon.reflect.code.CtFieldAccess;
-import spoon.reflect.code.CtInvocation;
-import spoon.reflect.code.CtLocalVariable;
-import spoon.reflect.code.CtStatement;
-import spoon.reflect.declaration.CtClass;
-import spoon.reflect.declaration.CtField;
-import spoon.reflect.declaration.CtMethod;
-import spoon.reflect.declaration.CtParameter;
-import spoon.reflect.declaration.CtType;
-import spoon.reflect.declaration.CtTypeMember;
-import spoon.reflect.reference.CtTypeReference;
-
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.Member;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Type;
+
+import java.io.IOException;
 import java.util.List;
 
 public interface SourceGenerator {
 
-    List<CtClass<?>> generateProgram();
+    List<ClassDeclaration> generateProgram();
+
+    /**
+     * Generates a program and passes it to the given sink, one method at a time.
+     *
+     * @param sink the sink to pass the program to
+     * @return the skeletons of all generated classes
+     * @throws IOException if the sink throws one
+     */
+    List<ClassSkeleton> generateProgram(ProgramSink sink) throws IOException;
+
+    List<ClassSkeleton> generateSkeletons();
 
-    <T> CtClass<T> generateClass(String name);
+    ClassSkeleton generateClass(String name);
 
-    CtTypeMember generateClassMember();
+    Member generateClassMember();
 
-    <T> CtField<T> generateField();
+    Field generateField();
 
-    <T> CtMethod<T> generateMethod();
+    Method generateMethod();
 
-    <T> CtParameter<T> generateParameter(String name);
+    Parameter generateParameter(String name);
 
-    <T> CtTypeReference<T> generateType(boolean voidAllowed);
+    Type generateType(boolean voidAllowed);
 
-    CtStatement generateStatement(AccessContext context);
+    Statement generateStatement(AccessContext context);
 
-    <T> CtBlock<T> generateBlock(AccessContext context, CtTypeReference<?> returnType);
+    Block generateBlock(AccessContext context, Type returnType);
 
-    CtStatement generateBlockStatement(AccessContext context);
+    Statement generateBlockStatement(AccessContext context);
 
-    CtStatement generateLocalVariableDeclarationStatement(AccessContext context);
+    Statement generateLocalVariableDeclarationStatement(AccessContext context);
 
-    CtStatement generateEmptyStatement(AccessContext context);
+    Statement generateEmptyStatement(AccessContext context);
 
-    CtStatement generateWhileStatement(AccessContext context);
+    Statement generateWhileStatement(AccessContext context);
 
-    CtStatement generateIfStatement(AccessContext context);
+    Statement generateIfStatement(AccessContext context);
 
-    CtStatement generateExpressionStatement(AccessContext context);
+    Statement generateExpressionStatement(AccessContext context);
 
-    CtStatement generateReturnStatement(AccessContext context, CtTypeReference<?> type);
+    Statement generateReturnStatement(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateAssignmentExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateAssignmentExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateLogicalOrExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateLogicalOrExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateLogicalAndExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateLogicalAndExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateEqualityExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateEqualityExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateRelationalExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateRelationalExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateAdditiveExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateAdditiveExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateMultiplicativeExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateMultiplicativeExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateUnaryExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateUnaryExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generatePostfixExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generatePostfixExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generatePostfixOp(CtExpression<?> target, AccessContext context, CtTypeReference<?> type);
+    Expression generatePostfixOp(Expression target, AccessContext context, Type type);
 
-    <T> CtInvocation<T> generateMethodInvocation(AccessContext context, CtTypeReference<?> type);
+    MethodInvocation generateMethodInvocation(AccessContext context, Type type);
 
-    <T> CtFieldAccess<T> generateFieldAccess(AccessContext context, CtTypeReference<?> type);
+    Expression generateFieldAccess(AccessContext context, Type type);
 
-    <T> CtArrayAccess<T, ?> generateArrayAccess(AccessContext context, CtTypeReference<?> type);
+    ArrayAccess generateArrayAccess(Expression target, AccessContext context);
 
-    <T> CtExpression<T> generateArgument(AccessContext context, CtTypeReference<?> type);
+    Expression generateArgument(AccessContext context, Type type);
 
-    <T> CtExpression<T> generatePrimaryExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generatePrimaryExpression(AccessContext context, Type type);
 
-    <T> CtExpression<T> generateNewObjectExpression(CtTypeReference<?> type);
+    Expression generateNewObjectExpression(Type type);
 
-    <T> CtExpression<T> generateNewArrayExpression(AccessContext context, CtTypeReference<?> type);
+    Expression generateNewArrayExpression(AccessContext context, Type type);
 
+    /**
+     * Everything expressions and statements may reference at a point of a method body.
+     *
+     * @param symbols the visible variables, shared by all contexts of a method body
+     * @param target the class whose members are accessed without an explicit target
+     * @param enclosingClass the class containing the method
+     * @param returnType the return type of the method
+     * @param complexity the nesting depth, limits further nesting
+     */
     record AccessContext(
-            List<CtLocalVariable<?>> localVariables,
-            List<CtParameter<?>> parameters,
-            CtType<?> target,
-            CtClass<?> enclosingClass,
-            CtTypeReference<?> returnType,
+            SymbolTable symbols,
+            ClassSkeleton target,
+            ClassSkeleton enclosingClass,
+            Type returnType,
             int complexity
     ) {
         public AccessContext incrementComplexity() {
             return new AccessContext(
-                    localVariables(),
-                    parameters(),
+                    symbols(),
                     target(),
                     enclosingClass(),
                     returnType(),
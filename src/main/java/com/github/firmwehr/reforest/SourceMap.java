@@ -0,0 +1,131 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.ThisAccess;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.EmptyStatement;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Maps positions in a printed program to the production that generated the node printed there, see
+ * {@link MiniJavaPrinter#MiniJavaPrinter(java.io.Writer, SourceMap)}. Productions are named like the keys of
+ * grammar weights, e.g. {@code statement.while} or {@code operator.equality}, or {@code class}, {@code field}
+ * and {@code method} for declarations.
+ */
+public final class SourceMap {
+    private long[] starts = new long[64];
+    private long[] ends = new long[64];
+    private String[] productions = new String[64];
+    private int size;
+
+    void add(long start, long end, String production) {
+        if (this.size == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.size * 2);
+            this.ends = Arrays.copyOf(this.ends, this.size * 2);
+            this.productions = Arrays.copyOf(this.productions, this.size * 2);
+        }
+        this.starts[this.size] = start;
+        this.ends[this.size] = end;
+        this.productions[this.size] = production;
+        this.size++;
+    }
+
+    /**
+     * {@return the production of the innermost node containing the given range, or {@code null} if there is none}
+     *
+     * @param start the start of the range, in chars from the start of the program
+     * @param end the exclusive end of the range
+     */
+    public String productionAt(long start, long end) {
+        String production = null;
+        long length = Long.MAX_VALUE;
+        // nodes are added after their children, so the first of two nodes with the same span is the inner one
+        for (int i = 0; i < this.size; i++) {
+            if (this.starts[i] <= start && end <= this.ends[i] && this.ends[i] - this.starts[i] < length) {
+                production = this.productions[i];
+                length = this.ends[i] - this.starts[i];
+            }
+        }
+        return production;
+    }
+
+    static String production(Statement statement) {
+        StatementType type;
+        if (statement instanceof EmptyStatement) {
+            type = StatementType.EMPTY;
+        } else if (statement instanceof Block) {
+            type = StatementType.BLOCK;
+        } else if (statement instanceof LocalVariableDeclaration) {
+            type = StatementType.LOCAL_VARIABLE_DECLARATION;
+        } else if (statement instanceof IfStatement) {
+            type = StatementType.IF;
+        } else if (statement instanceof WhileStatement) {
+            type = StatementType.WHILE;
+        } else if (statement instanceof ReturnStatement) {
+            type = StatementType.RETURN;
+        } else if (statement instanceof ExpressionStatement) {
+            type = StatementType.EXPRESSION;
+        } else {
+            throw new IllegalArgumentException("Unsupported statement " + statement);
+        }
+        return "statement." + type.name().toLowerCase(Locale.ROOT);
+    }
+
+    static String production(Expression expression) {
+        if (expression instanceof BinaryOperation operation) {
+            OperatorLevel level = switch (operation.operator()) {
+                case OR -> OperatorLevel.LOGICAL_OR;
+                case AND -> OperatorLevel.LOGICAL_AND;
+                case EQ, NE -> OperatorLevel.EQUALITY;
+                case LT, LE, GT, GE -> OperatorLevel.RELATIONAL;
+                case PLUS, MINUS -> OperatorLevel.ADDITIVE;
+                case MUL, DIV, MOD -> OperatorLevel.MULTIPLICATIVE;
+            };
+            return "operator." + level.name().toLowerCase(Locale.ROOT);
+        } else if (expression instanceof UnaryOperation) {
+            return "operator.unary";
+        } else if (expression instanceof Assignment) {
+            return "assignment";
+        } else if (expression instanceof ArrayAccess) {
+            return "array_access";
+        }
+        PrimaryExpressionType type;
+        if (expression instanceof IntegerLiteral
+                || expression instanceof BooleanLiteral
+                || expression instanceof NullLiteral) {
+            type = PrimaryExpressionType.LITERAL;
+        } else if (expression instanceof NewObject) {
+            type = PrimaryExpressionType.NEW_OBJECT;
+        } else if (expression instanceof NewArray) {
+            type = PrimaryExpressionType.NEW_ARRAY;
+        } else if (expression instanceof VariableAccess) {
+            type = PrimaryExpressionType.VARIABLE;
+        } else if (expression instanceof MethodInvocation) {
+            type = PrimaryExpressionType.METHOD_INVOCATION;
+        } else if (expression instanceof ThisAccess) {
+            type = PrimaryExpressionType.THIS;
+        } else {
+            throw new IllegalArgumentException("Unsupported expression " + expression);
+        }
+        return "primary." + type.name().toLowerCase(Locale.ROOT);
+    }
+}
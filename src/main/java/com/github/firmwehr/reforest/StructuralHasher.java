@@ -0,0 +1,273 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.ThisAccess;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.EmptyStatement;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+import com.github.firmwehr.reforest.model.Type;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes structural hashes of a program while it is generated, so programs that only differ in the spelling
+ * of identifiers or in the values of literals get the same hash.
+ * <p>
+ * Identifiers are replaced by the order of their first occurrence, and literals only contribute their kind.
+ * Besides the hash of the whole program, each method gets a hash of its own, in which the numbering of
+ * identifiers starts over, so equal methods get equal hashes wherever they are declared.
+ */
+public final class StructuralHasher implements ProgramSink {
+    private final Hash program = new Hash();
+    private long[] methodHashes = new long[16];
+    private int methodCount;
+
+    @Override
+    public void startClass(ClassSkeleton skeleton) {
+        this.program.mix(Tag.CLASS);
+        this.program.name(skeleton.name());
+        this.program.mix(skeleton.fields().size());
+        for (Field field : skeleton.fields()) {
+            this.program.type(field.type());
+            this.program.name(field.name());
+        }
+    }
+
+    @Override
+    public void method(Method method, Block body) {
+        this.program.method(method, body);
+        Hash hash = new Hash();
+        hash.method(method, body);
+        if (this.methodCount == this.methodHashes.length) {
+            this.methodHashes = Arrays.copyOf(this.methodHashes, this.methodCount * 2);
+        }
+        this.methodHashes[this.methodCount++] = hash.value();
+    }
+
+    @Override
+    public void endClass(ClassSkeleton skeleton) {
+        this.program.mix(Tag.END_CLASS);
+    }
+
+    /**
+     * {@return the structural hash of the program passed so far}
+     */
+    public long programHash() {
+        return this.program.value();
+    }
+
+    /**
+     * {@return the structural hashes of the methods passed so far, in order}
+     */
+    public long[] methodHashes() {
+        return Arrays.copyOf(this.methodHashes, this.methodCount);
+    }
+
+    /**
+     * Node kinds, mixed into the hash before the children of a node.
+     */
+    private enum Tag {
+        CLASS, END_CLASS, METHOD,
+        EMPTY, BLOCK, LOCAL_VARIABLE_DECLARATION, WHILE, IF, EXPRESSION_STATEMENT, RETURN,
+        INTEGER_LITERAL, BOOLEAN_LITERAL, NULL_LITERAL, BINARY, UNARY, ASSIGNMENT, VARIABLE, ARRAY_ACCESS,
+        METHOD_INVOCATION, THIS, NEW_OBJECT, NEW_ARRAY, ABSENT
+    }
+
+    private static final class Hash {
+        // built in types are kept, as they can't be renamed
+        private static final Map<String, Integer> BUILT_IN_TYPES = Map.of(
+                Type.VOID.name(), -1,
+                Type.INT.name(), -2,
+                Type.BOOLEAN.name(), -3,
+                Type.STRING.name(), -4,
+                Type.NULL.name(), -5
+        );
+
+        private final Map<String, Integer> names = new HashMap<>();
+        private long state = 0x9E3779B97F4A7C15L;
+
+        void mix(long value) {
+            this.state = Long.rotateLeft((this.state ^ value) * 0xBF58476D1CE4E5B9L, 31);
+        }
+
+        void mix(Tag tag) {
+            mix(tag.ordinal());
+        }
+
+        void name(String name) {
+            Integer index = this.names.get(name);
+            if (index == null) {
+                index = this.names.size();
+                this.names.put(name, index);
+            }
+            mix(index);
+        }
+
+        void type(Type type) {
+            Integer builtIn = BUILT_IN_TYPES.get(type.name());
+            if (builtIn != null) {
+                mix(builtIn);
+            } else {
+                name(type.name());
+            }
+            mix(type.dimensions());
+        }
+
+        void method(Method method, Block body) {
+            mix(Tag.METHOD);
+            mix(method.isStatic() ? 1 : 0);
+            type(method.returnType());
+            name(method.name());
+            mix(method.parameters().size());
+            for (Parameter parameter : method.parameters()) {
+                type(parameter.type());
+                name(parameter.name());
+            }
+            statement(body);
+        }
+
+        /**
+         * Mixes in the statement and everything below it. Nodes are visited in pre-order from a work stack, as
+         * bodies may be nested too deep for recursion, see {@link RandomSourceGeneratorSettings.GenerationLimits}.
+         */
+        void statement(Statement root) {
+            // statements, expressions, or ABSENT for a missing child
+            Deque<Object> work = new ArrayDeque<>();
+            work.push(root);
+            while (!work.isEmpty()) {
+                Object node = work.pop();
+                if (node instanceof Statement statement) {
+                    statement(statement, work);
+                } else if (node instanceof Expression expression) {
+                    expression(expression, work);
+                } else {
+                    mix((Tag) node);
+                }
+            }
+        }
+
+        // children are pushed in reverse, so they are popped in order
+        private void statement(Statement statement, Deque<Object> work) {
+            if (statement instanceof EmptyStatement) {
+                mix(Tag.EMPTY);
+            } else if (statement instanceof Block block) {
+                mix(Tag.BLOCK);
+                mix(block.statements().size());
+                for (int i = block.statements().size() - 1; i >= 0; i--) {
+                    work.push(block.statements().get(i));
+                }
+            } else if (statement instanceof LocalVariableDeclaration declaration) {
+                mix(Tag.LOCAL_VARIABLE_DECLARATION);
+                type(declaration.variable().type());
+                name(declaration.variable().name());
+                pushOptional(declaration.initializer(), work);
+            } else if (statement instanceof WhileStatement whileStatement) {
+                mix(Tag.WHILE);
+                work.push(whileStatement.body());
+                work.push(whileStatement.condition());
+            } else if (statement instanceof IfStatement ifStatement) {
+                mix(Tag.IF);
+                pushOptional(ifStatement.elseStatement(), work);
+                work.push(ifStatement.thenStatement());
+                work.push(ifStatement.condition());
+            } else if (statement instanceof ExpressionStatement expressionStatement) {
+                mix(Tag.EXPRESSION_STATEMENT);
+                work.push(expressionStatement.expression());
+            } else if (statement instanceof ReturnStatement returnStatement) {
+                mix(Tag.RETURN);
+                pushOptional(returnStatement.value(), work);
+            } else {
+                throw new IllegalArgumentException("Unsupported statement " + statement);
+            }
+        }
+
+        private static void pushOptional(Object node, Deque<Object> work) {
+            work.push(node == null ? Tag.ABSENT : node);
+        }
+
+        private void expression(Expression expression, Deque<Object> work) {
+            if (expression instanceof IntegerLiteral) {
+                mix(Tag.INTEGER_LITERAL);
+            } else if (expression instanceof BooleanLiteral) {
+                mix(Tag.BOOLEAN_LITERAL);
+            } else if (expression instanceof NullLiteral) {
+                mix(Tag.NULL_LITERAL);
+            } else if (expression instanceof BinaryOperation operation) {
+                mix(Tag.BINARY);
+                mix(operation.operator().ordinal());
+                work.push(operation.right());
+                work.push(operation.left());
+            } else if (expression instanceof UnaryOperation operation) {
+                mix(Tag.UNARY);
+                mix(operation.operator().ordinal());
+                work.push(operation.operand());
+            } else if (expression instanceof Assignment assignment) {
+                mix(Tag.ASSIGNMENT);
+                work.push(assignment.value());
+                work.push(assignment.target());
+            } else if (expression instanceof VariableAccess access) {
+                mix(Tag.VARIABLE);
+                // a field and a local variable of the same name are different variables
+                mix(access.variable() instanceof Field ? 1 : 0);
+                name(access.variable().name());
+            } else if (expression instanceof ArrayAccess access) {
+                mix(Tag.ARRAY_ACCESS);
+                work.push(access.index());
+                work.push(access.array());
+            } else if (expression instanceof MethodInvocation invocation) {
+                mix(Tag.METHOD_INVOCATION);
+                name(invocation.method().name());
+                mix(invocation.arguments().size());
+                for (int i = invocation.arguments().size() - 1; i >= 0; i--) {
+                    work.push(invocation.arguments().get(i));
+                }
+            } else if (expression instanceof ThisAccess) {
+                mix(Tag.THIS);
+            } else if (expression instanceof NewObject newObject) {
+                mix(Tag.NEW_OBJECT);
+                type(newObject.type());
+            } else if (expression instanceof NewArray newArray) {
+                mix(Tag.NEW_ARRAY);
+                type(newArray.type());
+                work.push(newArray.size());
+            } else {
+                throw new IllegalArgumentException("Unsupported expression " + expression);
+            }
+        }
+
+        long value() {
+            // the murmur3 finalizer, so every bit of the state affects every bit of the hash
+            long hash = this.state;
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            hash *= 0xC4CEB93FE1A85EC9L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
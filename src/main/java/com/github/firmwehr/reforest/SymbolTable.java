@@ -0,0 +1,119 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.LocalVariable;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.model.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The variables visible while generating a method body: the local variables of all enclosing blocks,
+ * the parameters of the method and the fields of the enclosing class, in that order.
+ * <p>
+ * Local variables live on a stack. Entering a block pushes a scope, leaving it pops all variables
+ * declared since. Every group is additionally indexed by type, so selecting a variable never copies
+ * or filters lists.
+ */
+public final class SymbolTable {
+    private final List<LocalVariable> localVariables;
+    private final TypeIndex<LocalVariable> localVariablesByType;
+    private final List<Parameter> parameters;
+    private final TypeIndex<Parameter> parametersByType;
+    private final List<Field> fields;
+    private final TypeIndex<Field> fieldsByType;
+    private int[] scopeStarts;
+    private int scopeDepth;
+
+    public SymbolTable(List<Parameter> parameters, List<Field> fields) {
+        this.localVariables = new ArrayList<>();
+        this.localVariablesByType = new TypeIndex<>();
+        this.parameters = parameters;
+        this.parametersByType = new TypeIndex<>();
+        for (Parameter parameter : parameters) {
+            this.parametersByType.add(parameter, parameter.type());
+        }
+        this.fields = fields;
+        this.fieldsByType = new TypeIndex<>();
+        for (Field field : fields) {
+            this.fieldsByType.add(field, field.type());
+        }
+        this.scopeStarts = new int[8];
+    }
+
+    public void pushScope() {
+        if (this.scopeDepth == this.scopeStarts.length) {
+            this.scopeStarts = Arrays.copyOf(this.scopeStarts, this.scopeDepth * 2);
+        }
+        this.scopeStarts[this.scopeDepth++] = this.localVariables.size();
+    }
+
+    /**
+     * Removes all local variables declared since the matching {@link #pushScope()}.
+     */
+    public void popScope() {
+        if (this.scopeDepth == 0) {
+            throw new IllegalStateException("No scope to pop");
+        }
+        int start = this.scopeStarts[--this.scopeDepth];
+        for (int i = this.localVariables.size() - 1; i >= start; i--) {
+            this.localVariablesByType.removeLast(this.localVariables.remove(i).type());
+        }
+    }
+
+    public void declare(LocalVariable localVariable) {
+        this.localVariables.add(localVariable);
+        this.localVariablesByType.add(localVariable, localVariable.type());
+    }
+
+    /**
+     * {@return the amount of visible variables}
+     */
+    public int size() {
+        return this.localVariables.size() + this.parameters.size() + this.fields.size();
+    }
+
+    public Variable get(int index) {
+        if (index < this.localVariables.size()) {
+            return this.localVariables.get(index);
+        }
+        index -= this.localVariables.size();
+        if (index < this.parameters.size()) {
+            return this.parameters.get(index);
+        }
+        return this.fields.get(index - this.parameters.size());
+    }
+
+    /**
+     * {@return the amount of visible variables of the given type or arrays of it}
+     *
+     * @param type the type of the variables
+     */
+    public int size(Type type) {
+        return this.localVariablesByType.get(type).size()
+                + this.parametersByType.get(type).size()
+                + this.fieldsByType.get(type).size();
+    }
+
+    /**
+     * {@return the variable at the given index among the variables of the given type or arrays of it}
+     *
+     * @param type the type of the variables
+     * @param index the index of the variable, less than {@link #size(Type)}
+     */
+    public Variable get(Type type, int index) {
+        List<LocalVariable> localVariables = this.localVariablesByType.get(type);
+        if (index < localVariables.size()) {
+            return localVariables.get(index);
+        }
+        index -= localVariables.size();
+        List<Parameter> parameters = this.parametersByType.get(type);
+        if (index < parameters.size()) {
+            return parameters.get(index);
+        }
+        return this.fieldsByType.get(type).get(index - parameters.size());
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.Type;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values indexed by their type, for looking up all values of a type or of arrays of it, see
+ * {@link Type#isArrayOf(Type)}. Lookups are a single identity hash map access and don't allocate.
+ * <p>
+ * A value of type {@code T[][]} is stored in the buckets of {@code T}, {@code T[]} and {@code T[][]},
+ * in the order the values were added.
+ *
+ * @param <V> the type of the values
+ */
+final class TypeIndex<V> {
+    private final Map<Type, List<List<V>>> byBaseType = new IdentityHashMap<>();
+
+    void add(V value, Type type) {
+        List<List<V>> byDimensions = this.byBaseType.computeIfAbsent(type.baseType(), base -> new ArrayList<>());
+        while (byDimensions.size() <= type.dimensions()) {
+            byDimensions.add(new ArrayList<>());
+        }
+        for (int dimensions = 0; dimensions <= type.dimensions(); dimensions++) {
+            byDimensions.get(dimensions).add(value);
+        }
+    }
+
+    /**
+     * Removes the value that was added last for the given type. Values of other types that were added
+     * later are not affected.
+     *
+     * @param type the type of the value to remove
+     */
+    void removeLast(Type type) {
+        List<List<V>> byDimensions = this.byBaseType.get(type.baseType());
+        for (int dimensions = 0; dimensions <= type.dimensions(); dimensions++) {
+            List<V> bucket = byDimensions.get(dimensions);
+            bucket.remove(bucket.size() - 1);
+        }
+    }
+
+    /**
+     * {@return the values of the given type or arrays of it, must not be modified}
+     *
+     * @param type the type to look up
+     */
+    List<V> get(Type type) {
+        List<List<V>> byDimensions = this.byBaseType.get(type.baseType());
+        if (byDimensions == null || byDimensions.size() <= type.dimensions()) {
+            return List.of();
+        }
+        return byDimensions.get(type.dimensions());
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.firmwehr.reforest;
+
+import net.jbock.Command;
+import net.jbock.Option;
+
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+@Command(
+        name = "validate",
+        description = "Compiles generated programs in memory with javac and reports the errors by production. "
+                + "The programs are generated from the options after '--', which are the same as for generating one"
+)
+public interface ValidateOptions {
+
+    @Option(
+            names = {"--count", "-n"},
+            paramLabel = "LONG",
+            description = "The amount of programs to validate, with consecutive seeds. Defaults to 100"
+    )
+    OptionalLong count();
+
+    @Option(
+            names = {"--threads", "-t"},
+            paramLabel = "INTEGER",
+            description = "The amount of programs to compile in parallel. Defaults to the number of available processors"
+    )
+    OptionalInt threads();
+}
@@ -0,0 +1,14 @@
+package com.github.firmwehr.reforest.model;
+
+import java.util.List;
+
+public record ClassDeclaration(ClassSkeleton skeleton, List<MethodDeclaration> methods) {
+
+    public String name() {
+        return this.skeleton.name();
+    }
+
+    public List<Field> fields() {
+        return this.skeleton.fields();
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.firmwehr.reforest.model;
+
+import java.util.List;
+
+/**
+ * The name, fields and method signatures of a class, which is everything other classes need to
+ * reference it.
+ */
+public record ClassSkeleton(
+        String name,
+        Type type,
+        List<Field> fields,
+        List<Method> methods
+) {
+
+    public ClassSkeleton(String name, List<Field> fields, List<Method> methods) {
+        this(name, Type.named(name), fields, methods);
+    }
+
+    public boolean hasField(String name) {
+        return this.fields.stream().anyMatch(f -> f.name().equals(name));
+    }
+
+    public boolean hasMethod(String name) {
+        return this.methods.stream().anyMatch(m -> m.name().equals(name));
+    }
+}
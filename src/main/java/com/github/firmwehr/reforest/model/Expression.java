@@ -0,0 +1,134 @@
+package com.github.firmwehr.reforest.model;
+
+import java.util.List;
+
+public sealed interface Expression {
+
+    /**
+     * Operator precedences, higher binds stronger.
+     */
+    int ASSIGNMENT_PRECEDENCE = 1;
+    int UNARY_PRECEDENCE = 8;
+    int POSTFIX_PRECEDENCE = 9;
+
+    Type type();
+
+    record IntegerLiteral(int value) implements Expression {
+        @Override
+        public Type type() {
+            return Type.INT;
+        }
+    }
+
+    record BooleanLiteral(boolean value) implements Expression {
+        @Override
+        public Type type() {
+            return Type.BOOLEAN;
+        }
+    }
+
+    record NullLiteral() implements Expression {
+        public static final NullLiteral INSTANCE = new NullLiteral();
+
+        @Override
+        public Type type() {
+            return Type.NULL;
+        }
+    }
+
+    record BinaryOperation(BinaryOperator operator, Expression left, Expression right, Type type) implements Expression {
+    }
+
+    record UnaryOperation(UnaryOperator operator, Expression operand) implements Expression {
+        @Override
+        public Type type() {
+            return this.operand.type();
+        }
+    }
+
+    /**
+     * @param target either a {@link VariableAccess} or an {@link ArrayAccess}
+     */
+    record Assignment(Expression target, Expression value, Type type) implements Expression {
+    }
+
+    record VariableAccess(Variable variable) implements Expression {
+        @Override
+        public Type type() {
+            return this.variable.type();
+        }
+    }
+
+    record ArrayAccess(Expression array, Expression index, Type type) implements Expression {
+    }
+
+    /**
+     * An invocation of a method on {@code this}.
+     */
+    record MethodInvocation(Method method, List<Expression> arguments) implements Expression {
+        @Override
+        public Type type() {
+            return this.method.returnType();
+        }
+    }
+
+    record ThisAccess(Type type) implements Expression {
+    }
+
+    record NewObject(Type type) implements Expression {
+    }
+
+    /**
+     * @param type the type of the created array
+     * @param size the size of the first dimension
+     */
+    record NewArray(Type type, Expression size) implements Expression {
+    }
+
+    enum BinaryOperator {
+        OR("||", 2),
+        AND("&&", 3),
+        EQ("==", 4),
+        NE("!=", 4),
+        LT("<", 5),
+        LE("<=", 5),
+        GT(">", 5),
+        GE(">=", 5),
+        PLUS("+", 6),
+        MINUS("-", 6),
+        MUL("*", 7),
+        DIV("/", 7),
+        MOD("%", 7);
+
+        private final String symbol;
+        private final int precedence;
+
+        BinaryOperator(String symbol, int precedence) {
+            this.symbol = symbol;
+            this.precedence = precedence;
+        }
+
+        public String symbol() {
+            return this.symbol;
+        }
+
+        public int precedence() {
+            return this.precedence;
+        }
+    }
+
+    enum UnaryOperator {
+        NEG("-"),
+        NOT("!");
+
+        private final String symbol;
+
+        UnaryOperator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String symbol() {
+            return this.symbol;
+        }
+    }
+}
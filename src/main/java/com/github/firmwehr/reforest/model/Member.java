@@ -0,0 +1,9 @@
+package com.github.firmwehr.reforest.model;
+
+/**
+ * A member of a class.
+ */
+public sealed interface Member permits Field, Method {
+
+    String name();
+}
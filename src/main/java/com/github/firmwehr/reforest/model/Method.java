@@ -0,0 +1,16 @@
+package com.github.firmwehr.reforest.model;
+
+import java.util.List;
+
+/**
+ * The signature of a method. The body is kept separately in a {@link MethodDeclaration}, as it is
+ * generated once the signatures of all classes are known.
+ */
+public record Method(
+        String name,
+        Type returnType,
+        List<Parameter> parameters,
+        List<Type> thrownTypes,
+        boolean isStatic
+) implements Member {
+}
@@ -0,0 +1,4 @@
+package com.github.firmwehr.reforest.model;
+
+public record MethodDeclaration(Method method, Statement.Block body) {
+}
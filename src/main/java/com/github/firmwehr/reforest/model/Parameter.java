@@ -0,0 +1,4 @@
+package com.github.firmwehr.reforest.model;
+
+public record Parameter(String name, Type type) implements Variable {
+}
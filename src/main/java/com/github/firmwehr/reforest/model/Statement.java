@@ -0,0 +1,31 @@
+package com.github.firmwehr.reforest.model;
+
+import java.util.List;
+
+public sealed interface Statement {
+
+    record Block(List<Statement> statements) implements Statement {
+    }
+
+    record LocalVariableDeclaration(LocalVariable variable, Expression initializer) implements Statement {
+    }
+
+    record EmptyStatement() implements Statement {
+        public static final EmptyStatement INSTANCE = new EmptyStatement();
+    }
+
+    record WhileStatement(Expression condition, Statement body) implements Statement {
+    }
+
+    record IfStatement(Expression condition, Statement thenStatement, Statement elseStatement) implements Statement {
+    }
+
+    record ExpressionStatement(Expression expression) implements Statement {
+    }
+
+    /**
+     * @param value the returned value, {@code null} in methods returning void
+     */
+    record ReturnStatement(Expression value) implements Statement {
+    }
+}
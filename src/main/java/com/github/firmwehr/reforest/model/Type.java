@@ -0,0 +1,139 @@
+package com.github.firmwehr.reforest.model;
+
+/**
+ * A type of the generated program, either a primitive, a class or an array of one of those.
+ * <p>
+ * Types are canonical: a base type is created once with {@link #named(String)}, and all array types of it are
+ * derived from it, so there is a single instance per base type and amount of dimensions. Types are therefore
+ * compared by identity, and deriving array or element types neither allocates nor looks anything up.
+ */
+public final class Type {
+    public static final Type VOID = new Type("void");
+    public static final Type INT = new Type("int");
+    public static final Type BOOLEAN = new Type("boolean");
+    public static final Type NULL = new Type("null");
+    public static final Type STRING = new Type("String");
+
+    private final String name;
+    private final int dimensions;
+    private final Type base;
+    private final Type element;
+    private final int hashCode;
+    // only used in base types, indexed by dimensions. Grown under the lock of the base type, as the
+    // built-in types are shared by all generators
+    private volatile Type[] arrayTypes;
+
+    private Type(String name) {
+        this.name = name;
+        this.dimensions = 0;
+        this.base = this;
+        this.element = null;
+        this.hashCode = name.hashCode();
+        this.arrayTypes = new Type[]{this};
+    }
+
+    private Type(Type element) {
+        this.name = element.name;
+        this.dimensions = element.dimensions + 1;
+        this.base = element.base;
+        this.element = element;
+        this.hashCode = 31 * this.base.hashCode + this.dimensions;
+    }
+
+    /**
+     * Creates a base type. Each class should only be created once, as types of different base types
+     * are never equal.
+     *
+     * @param name the name of the base type
+     * @return the built-in type of the given name, or a new base type
+     */
+    public static Type named(String name) {
+        return switch (name) {
+            case "void" -> VOID;
+            case "int" -> INT;
+            case "boolean" -> BOOLEAN;
+            case "null" -> NULL;
+            case "String" -> STRING;
+            default -> new Type(name);
+        };
+    }
+
+    /**
+     * {@return the name of the base type}
+     */
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * {@return the amount of array dimensions, {@code 0} for non-array types}
+     */
+    public int dimensions() {
+        return this.dimensions;
+    }
+
+    /**
+     * {@return the type without array dimensions}
+     */
+    public Type baseType() {
+        return this.base;
+    }
+
+    public boolean isArray() {
+        return this.dimensions > 0;
+    }
+
+    public Type arrayOf(int additionalDimensions) {
+        return this.base.withDimensions(this.dimensions + additionalDimensions);
+    }
+
+    public Type elementType() {
+        if (!isArray()) {
+            throw new IllegalStateException("%s is not an array type".formatted(this));
+        }
+        return this.element;
+    }
+
+    /**
+     * {@return true if this is an array type with the same base type and more dimensions than the given type}
+     */
+    public boolean isArrayOf(Type type) {
+        return this.dimensions > type.dimensions && this.base == type.base;
+    }
+
+    private Type withDimensions(int dimensions) {
+        Type[] arrayTypes = this.arrayTypes;
+        if (dimensions < arrayTypes.length) {
+            return arrayTypes[dimensions];
+        }
+        synchronized (this) {
+            arrayTypes = this.arrayTypes;
+            if (dimensions >= arrayTypes.length) {
+                Type[] grown = new Type[Math.max(dimensions + 1, 2 * arrayTypes.length)];
+                System.arraycopy(arrayTypes, 0, grown, 0, arrayTypes.length);
+                for (int i = arrayTypes.length; i < grown.length; i++) {
+                    grown[i] = new Type(grown[i - 1]);
+                }
+                // published only once filled
+                this.arrayTypes = arrayTypes = grown;
+            }
+            return arrayTypes[dimensions];
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    @Override
+    public int hashCode() {
+        // consistent with identity, but doesn't depend on the instance, so hash based iteration is reproducible
+        return this.hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "[]".repeat(this.dimensions);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.firmwehr.reforest.model;
+
+/**
+ * Something that can be read and assigned by name.
+ */
+public sealed interface Variable permits Field, LocalVariable, Parameter {
+
+    String name();
+
+    Type type();
+}
@@ -0,0 +1,260 @@
+package com.github.firmwehr.reforest.spoon;
+
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.Expression;
+import com.github.firmwehr.reforest.model.Expression.ArrayAccess;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewArray;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.NullLiteral;
+import com.github.firmwehr.reforest.model.Expression.ThisAccess;
+import com.github.firmwehr.reforest.model.Expression.UnaryOperation;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.MethodDeclaration;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.EmptyStatement;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Statement.WhileStatement;
+import com.github.firmwehr.reforest.model.Type;
+import com.github.firmwehr.reforest.model.Variable;
+import spoon.Launcher;
+import spoon.reflect.code.BinaryOperatorKind;
+import spoon.reflect.code.CtArrayRead;
+import spoon.reflect.code.CtAssignment;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtExpression;
+import spoon.reflect.code.CtIf;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.code.CtLocalVariable;
+import spoon.reflect.code.CtNewArray;
+import spoon.reflect.code.CtReturn;
+import spoon.reflect.code.CtStatement;
+import spoon.reflect.code.CtUnaryOperator;
+import spoon.reflect.code.CtWhile;
+import spoon.reflect.code.UnaryOperatorKind;
+import spoon.reflect.declaration.CtClass;
+import spoon.reflect.declaration.CtField;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtParameter;
+import spoon.reflect.declaration.CtVariable;
+import spoon.reflect.declaration.ModifierKind;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtExecutableReference;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.reference.CtVariableReference;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts generated programs into the spoon model, for users that need {@link CtClass} instances,
+ * e.g. to run spoon processors on them. spoon is an optional dependency, only this package needs it.
+ */
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class SpoonAdapter {
+    private final Factory factory;
+    // the generator shares variable and method instances between declaration and usage
+    private final Map<Variable, CtVariable<?>> variables = new IdentityHashMap<>();
+    private final Map<Method, CtMethod<?>> methods = new IdentityHashMap<>();
+
+    public SpoonAdapter() {
+        this(new Launcher().getFactory());
+    }
+
+    public SpoonAdapter(Factory factory) {
+        this.factory = factory;
+    }
+
+    public List<CtClass<?>> toSpoon(List<ClassDeclaration> classes) {
+        List<CtClass<?>> ctClasses = new ArrayList<>(classes.size());
+        for (ClassDeclaration classDeclaration : classes) {
+            ctClasses.add(declareClass(classDeclaration));
+        }
+        // method bodies may reference members of all classes
+        for (ClassDeclaration classDeclaration : classes) {
+            for (MethodDeclaration declaration : classDeclaration.methods()) {
+                this.methods.get(declaration.method()).setBody(toSpoon(declaration.body()));
+            }
+        }
+        return ctClasses;
+    }
+
+    private CtClass<?> declareClass(ClassDeclaration classDeclaration) {
+        CtClass<?> ctClass = this.factory.Class().create(classDeclaration.name());
+        for (Field field : classDeclaration.fields()) {
+            CtField<?> ctField = this.factory.Core().createField();
+            ctField.setSimpleName(field.name());
+            ctField.setType(toSpoon(field.type()));
+            ctField.addModifier(ModifierKind.PUBLIC);
+            ctClass.addTypeMember(ctField);
+            this.variables.put(field, ctField);
+        }
+        for (MethodDeclaration declaration : classDeclaration.methods()) {
+            Method method = declaration.method();
+            CtMethod<?> ctMethod = this.factory.Core().createMethod();
+            ctMethod.setSimpleName(method.name());
+            ctMethod.setType(toSpoon(method.returnType()));
+            List<CtParameter<?>> parameters = new ArrayList<>();
+            for (Parameter parameter : method.parameters()) {
+                CtParameter<?> ctParameter = this.factory.Core().createParameter();
+                ctParameter.setType(toSpoon(parameter.type()));
+                ctParameter.setSimpleName(parameter.name());
+                parameters.add(ctParameter);
+                this.variables.put(parameter, ctParameter);
+            }
+            ctMethod.setParameters(parameters);
+            for (Type thrownType : method.thrownTypes()) {
+                ctMethod.addThrownType(toSpoon(thrownType));
+            }
+            ctMethod.addModifier(ModifierKind.PUBLIC);
+            if (method.isStatic()) {
+                ctMethod.addModifier(ModifierKind.STATIC);
+            }
+            ctClass.addTypeMember(ctMethod);
+            this.methods.put(method, ctMethod);
+        }
+        return ctClass;
+    }
+
+    private CtStatement toSpoon(Statement statement) {
+        if (statement instanceof Block block) {
+            CtBlock<?> ctBlock = this.factory.createBlock();
+            for (Statement s : block.statements()) {
+                ctBlock.addStatement(toSpoon(s));
+            }
+            return ctBlock;
+        } else if (statement instanceof LocalVariableDeclaration declaration) {
+            CtLocalVariable<?> localVariable = this.factory.Code().createLocalVariable(
+                    (CtTypeReference) toSpoon(declaration.variable().type()),
+                    declaration.variable().name(),
+                    declaration.initializer() == null ? null : (CtExpression) toSpoon(declaration.initializer())
+            );
+            this.variables.put(declaration.variable(), localVariable);
+            return localVariable;
+        } else if (statement instanceof EmptyStatement) {
+            return this.factory.Core().createCodeSnippetStatement();
+        } else if (statement instanceof WhileStatement whileStatement) {
+            CtWhile ctWhile = this.factory.createWhile();
+            ctWhile.setLoopingExpression(toSpoon(whileStatement.condition()));
+            ctWhile.setBody(toSpoon(whileStatement.body()));
+            return ctWhile;
+        } else if (statement instanceof IfStatement ifStatement) {
+            CtIf ctIf = this.factory.createIf();
+            ctIf.setCondition(toSpoon(ifStatement.condition()));
+            CtStatement thenStatement = toSpoon(ifStatement.thenStatement());
+            if (thenStatement instanceof CtBlock<?> block && block.getStatements().isEmpty()) {
+                thenStatement = null; // spoon #4240 workaround
+            }
+            ctIf.setThenStatement(thenStatement);
+            if (ifStatement.elseStatement() != null) {
+                ctIf.setElseStatement(toSpoon(ifStatement.elseStatement()));
+            }
+            return ctIf;
+        } else if (statement instanceof ExpressionStatement expressionStatement) {
+            return (CtStatement) toSpoon(expressionStatement.expression());
+        } else if (statement instanceof ReturnStatement returnStatement) {
+            CtReturn<?> ctReturn = this.factory.Core().createReturn();
+            if (returnStatement.value() != null) {
+                ctReturn.setReturnedExpression(toSpoon(returnStatement.value()));
+            }
+            return ctReturn;
+        }
+        throw new IllegalArgumentException("Unsupported statement " + statement);
+    }
+
+    private CtExpression<?> toSpoon(Expression expression) {
+        if (expression instanceof IntegerLiteral literal) {
+            return this.factory.Code().createLiteral(literal.value());
+        } else if (expression instanceof BooleanLiteral literal) {
+            return this.factory.Code().createLiteral(literal.value());
+        } else if (expression instanceof NullLiteral) {
+            return this.factory.Code().createLiteral(null);
+        } else if (expression instanceof BinaryOperation operation) {
+            return this.factory.createBinaryOperator(
+                    toSpoon(operation.left()),
+                    toSpoon(operation.right()),
+                    BinaryOperatorKind.valueOf(operation.operator().name())
+            ).setType(toSpoon(operation.type()));
+        } else if (expression instanceof UnaryOperation operation) {
+            return this.factory.createUnaryOperator()
+                    .<CtUnaryOperator<?>>setKind(switch (operation.operator()) {
+                        case NEG -> UnaryOperatorKind.NEG;
+                        case NOT -> UnaryOperatorKind.NOT;
+                    })
+                    .<CtUnaryOperator<?>>setOperand(toSpoon(operation.operand()));
+        } else if (expression instanceof Assignment assignment) {
+            if (assignment.target() instanceof VariableAccess access) {
+                return this.factory.createVariableAssignment(
+                        (CtVariableReference) this.variables.get(access.variable()).getReference(),
+                        false,
+                        (CtExpression) toSpoon(assignment.value())
+                );
+            }
+            CtAssignment ctAssignment = this.factory.createAssignment();
+            ctAssignment.setAssigned(toSpoon(assignment.target()));
+            ctAssignment.setAssignment(toSpoon(assignment.value()));
+            ctAssignment.setType(toSpoon(assignment.type()));
+            return ctAssignment;
+        } else if (expression instanceof VariableAccess access) {
+            return this.factory.createVariableRead(this.variables.get(access.variable()).getReference(), false)
+                    .setType(toSpoon(access.type()));
+        } else if (expression instanceof ArrayAccess arrayAccess) {
+            CtArrayRead<?> arrayRead = this.factory.createArrayRead();
+            arrayRead.setTarget(toSpoon(arrayAccess.array()));
+            arrayRead.setIndexExpression((CtExpression) toSpoon(arrayAccess.index()));
+            arrayRead.setType(toSpoon(arrayAccess.type()));
+            return arrayRead;
+        } else if (expression instanceof MethodInvocation invocation) {
+            CtMethod<?> ctMethod = this.methods.get(invocation.method());
+            CtInvocation<?> ctInvocation = this.factory.createInvocation();
+            ctInvocation.setTarget(this.factory.createThisAccess(ctMethod.getDeclaringType().getReference(), true));
+            ctInvocation.setExecutable((CtExecutableReference) ctMethod.getReference());
+            for (Expression argument : invocation.arguments()) {
+                ctInvocation.addArgument(toSpoon(argument));
+            }
+            return ctInvocation;
+        } else if (expression instanceof ThisAccess thisAccess) {
+            return this.factory.createThisAccess(toSpoon(thisAccess.type()));
+        } else if (expression instanceof NewObject newObject) {
+            return this.factory.createConstructorCall(toSpoon(newObject.type()));
+        } else if (expression instanceof NewArray newArray) {
+            CtNewArray<?> ctNewArray = this.factory.createNewArray();
+            ctNewArray.setType(toSpoon(newArray.type()));
+            ctNewArray.addDimensionExpression((CtExpression) toSpoon(newArray.size()));
+            return ctNewArray;
+        }
+        throw new IllegalArgumentException("Unsupported expression " + expression);
+    }
+
+    private CtTypeReference<?> toSpoon(Type type) {
+        CtTypeReference<?> base;
+        if (type.baseType() == Type.INT) {
+            base = this.factory.Type().integerPrimitiveType();
+        } else if (type.baseType() == Type.BOOLEAN) {
+            base = this.factory.Type().booleanPrimitiveType();
+        } else if (type.equals(Type.VOID)) {
+            base = this.factory.Type().voidPrimitiveType();
+        } else if (type.equals(Type.NULL)) {
+            base = this.factory.Type().NULL_TYPE;
+        } else {
+            base = this.factory.Type().createReference(type.name());
+        }
+        if (type.isArray()) {
+            return this.factory.Type().createArrayReference(base, type.dimensions());
+        }
+        return base;
+    }
+}
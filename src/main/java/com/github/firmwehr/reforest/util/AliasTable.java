@@ -0,0 +1,83 @@
+package com.github.firmwehr.reforest.util;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples indices with given weights in constant time, using Walker's alias method.
+ * <p>
+ * Every index owns a column of equal width. A column is split between its owner and one alias, so a
+ * sample is a single uniform draw that picks the column and the side of the split.
+ */
+public final class AliasTable {
+    private final double[] probabilities;
+    private final int[] aliases;
+
+    /**
+     * Creates a table for the given weights. Weights don't need to sum up to one.
+     *
+     * @param weights the non-negative weights of the indices, at least one of them positive
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Invalid weight %s".formatted(weight));
+            }
+            sum += weight;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+        // scaled so that a column is full at 1
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            this.probabilities[less] = scaled[less];
+            this.aliases[less] = more;
+            // the larger index fills up the rest of the column
+            scaled[more] -= 1 - scaled[less];
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // leftovers are full columns, up to rounding errors
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            this.probabilities[index] = 1;
+            this.aliases[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            this.probabilities[index] = 1;
+            this.aliases[index] = index;
+        }
+    }
+
+    public int size() {
+        return this.probabilities.length;
+    }
+
+    public int sample(RandomGenerator random) {
+        double u = random.nextDouble() * this.probabilities.length;
+        int column = (int) u;
+        return u - column < this.probabilities[column] ? column : this.aliases[column];
+    }
+}
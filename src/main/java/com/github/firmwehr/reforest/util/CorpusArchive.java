@@ -0,0 +1,362 @@
+package com.github.firmwehr.reforest.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.LongStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * A corpus of generated programs in a single file, each compressed on its own, so any program can be
+ * extracted without touching the others. The archive is memory-mapped, all users of the same file share
+ * the mapped pages.
+ * <p>
+ * The format is a header of magic number and version, followed by the deflated programs, an index and a
+ * trailer. The index has one entry per seed of the corpus, consecutive from the first seed, each consisting of
+ * the offset of the deflated program, its length, the length of the UTF-8 encoded source and its structural
+ * hash. Seeds without a program, e.g. skipped duplicates, have an offset of -1. The trailer consists of the
+ * offset of the index, the first seed, the amount of seeds and the magic number again, so a truncated archive
+ * is noticed. The index and trailer are only written once all programs were added, an archive that wasn't
+ * finished is deleted. All numbers are big endian.
+ */
+public final class CorpusArchive {
+    private static final int MAGIC = 0x52464341; // RFCA
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+    // archives may be larger than a single mapping can be
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final Path path;
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final long indexStart;
+    private final long firstSeed;
+    private final int seedCount;
+
+    private CorpusArchive(Path path, ByteBuffer[] segments, int segmentSize, long indexStart, long firstSeed,
+                          int seedCount) {
+        this.path = path;
+        this.segments = segments;
+        this.segmentSize = segmentSize;
+        this.indexStart = indexStart;
+        this.firstSeed = firstSeed;
+        this.seedCount = seedCount;
+    }
+
+    /**
+     * Creates a new archive for the programs with the seeds {@code firstSeed} to {@code firstSeed + seedCount - 1}.
+     *
+     * @param path the file to write the archive to, which must not exist yet
+     * @param firstSeed the first seed of the corpus
+     * @param seedCount the amount of seeds of the corpus
+     * @return a writer to add the programs with, which has to be {@linkplain Writer#finish() finished}
+     * @throws IOException if the file could not be created
+     */
+    public static Writer create(Path path, long firstSeed, int seedCount) throws IOException {
+        if (seedCount < 0) {
+            throw new IllegalArgumentException("The amount of seeds must not be negative, was %d".formatted(seedCount));
+        }
+        return new Writer(path, firstSeed, seedCount);
+    }
+
+    public static CorpusArchive map(Path path) throws IOException {
+        return map(path, SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps an archive in segments of the given size, small segments are only useful to test programs
+     * spanning segments.
+     */
+    static CorpusArchive map(Path path, int segmentSize) throws IOException {
+        ByteBuffer[] segments;
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            segments = new ByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i * segmentSize;
+                // the mapping stays valid after the channel is closed
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+            }
+        }
+        if (size < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("'%s' is not a corpus archive".formatted(path));
+        }
+        ByteBuffer header = range(segments, segmentSize, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("'%s' is not a corpus archive".formatted(path));
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("'%s' has unsupported version %d".formatted(path, version));
+        }
+        ByteBuffer trailer = range(segments, segmentSize, size - TRAILER_SIZE, TRAILER_SIZE);
+        long indexStart = trailer.getLong();
+        long firstSeed = trailer.getLong();
+        int seedCount = trailer.getInt();
+        if (trailer.getInt() != MAGIC || seedCount < 0 || indexStart < HEADER_SIZE
+                || indexStart + (long) seedCount * INDEX_ENTRY_SIZE != size - TRAILER_SIZE) {
+            throw new IOException("'%s' is truncated or corrupt".formatted(path));
+        }
+        return new CorpusArchive(path, segments, segmentSize, indexStart, firstSeed, seedCount);
+    }
+
+    /**
+     * {@return the first seed of the corpus}
+     */
+    public long firstSeed() {
+        return this.firstSeed;
+    }
+
+    /**
+     * {@return the amount of seeds of the corpus, including those without a program}
+     */
+    public int seedCount() {
+        return this.seedCount;
+    }
+
+    public boolean contains(long seed) {
+        return isInRange(seed) && indexEntry(seed).getLong() >= 0;
+    }
+
+    /**
+     * {@return the seeds with a program, in ascending order}
+     */
+    public LongStream seeds() {
+        return LongStream.range(this.firstSeed, this.firstSeed + this.seedCount).filter(this::contains);
+    }
+
+    /**
+     * {@return the structural hash of the program of the given seed}
+     *
+     * @param seed the seed of the program
+     * @throws NoSuchElementException if the archive has no program of the given seed
+     */
+    public long structuralHash(long seed) {
+        ByteBuffer entry = existingIndexEntry(seed);
+        return entry.getLong(entry.position() + Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Decompresses the program of the given seed.
+     *
+     * @param seed the seed of the program
+     * @return the UTF-8 encoded source of the program
+     * @throws IOException if the program is corrupt
+     * @throws NoSuchElementException if the archive has no program of the given seed
+     */
+    public byte[] source(long seed) throws IOException {
+        ByteBuffer entry = existingIndexEntry(seed);
+        long offset = entry.getLong();
+        int length = entry.getInt();
+        int sourceLength = entry.getInt();
+        if (length < 0 || sourceLength < 0 || offset < HEADER_SIZE || offset + length > this.indexStart) {
+            throw new IOException("The index entry of seed %d in '%s' is corrupt".formatted(seed, this.path));
+        }
+        byte[] source = new byte[sourceLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(range(this.segments, this.segmentSize, offset, length));
+            byte[] excess = new byte[1];
+            int read = 0;
+            while (!inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary()) {
+                if (read < sourceLength) {
+                    read += inflater.inflate(source, read, sourceLength - read);
+                } else if (inflater.inflate(excess) > 0) {
+                    read++;
+                    break;
+                }
+            }
+            if (!inflater.finished() || read != sourceLength) {
+                throw new IOException("The program of seed %d in '%s' is truncated or has the wrong length"
+                        .formatted(seed, this.path));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("The program of seed %d in '%s' is corrupt".formatted(seed, this.path), e);
+        } finally {
+            inflater.end();
+        }
+        return source;
+    }
+
+    private boolean isInRange(long seed) {
+        return seed - this.firstSeed >= 0 && seed - this.firstSeed < this.seedCount;
+    }
+
+    private ByteBuffer indexEntry(long seed) {
+        long offset = this.indexStart + (seed - this.firstSeed) * INDEX_ENTRY_SIZE;
+        return range(this.segments, this.segmentSize, offset, INDEX_ENTRY_SIZE);
+    }
+
+    private ByteBuffer existingIndexEntry(long seed) {
+        if (!isInRange(seed)) {
+            throw new NoSuchElementException("The archive '%s' has no seed %d".formatted(this.path, seed));
+        }
+        ByteBuffer entry = indexEntry(seed);
+        if (entry.getLong(entry.position()) < 0) {
+            throw new NoSuchElementException("The archive '%s' has no program of seed %d".formatted(this.path, seed));
+        }
+        return entry;
+    }
+
+    /**
+     * {@return a buffer of the given range, a view of the mapping unless it spans two segments}
+     */
+    private static ByteBuffer range(ByteBuffer[] segments, int segmentSize, long offset, int length) {
+        int segment = (int) (offset / segmentSize);
+        int start = (int) (offset % segmentSize);
+        if (start + length <= segments[segment].limit()) {
+            // absolute slice, doesn't touch the position of the shared buffer
+            return segments[segment].slice(start, length);
+        }
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            int count = Math.min(length - copied, segments[segment].limit() - start);
+            segments[segment].get(start, bytes, copied, count);
+            copied += count;
+            segment++;
+            start = 0;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * A compressed program, ready to be added to an archive. Compressing is independent of the archive, so
+     * programs can be compressed in parallel.
+     *
+     * @param data the deflated source
+     * @param sourceLength the length of the UTF-8 encoded source
+     * @param structuralHash the structural hash of the program
+     */
+    public record Entry(byte[] data, int sourceLength, long structuralHash) {
+
+        public static Entry compress(String source, long structuralHash) {
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream data = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            Deflater deflater = new Deflater();
+            try (var out = new DeflaterOutputStream(data, deflater)) {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // can't happen, we don't do IO here
+            } finally {
+                deflater.end();
+            }
+            return new Entry(data.toByteArray(), bytes.length, structuralHash);
+        }
+    }
+
+    /**
+     * Writes an archive. Programs are written in the order they are added, the index is written by
+     * {@link #finish()}. Closing an archive that wasn't finished deletes it, so a failed run doesn't leave an
+     * archive that looks complete. Not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final DataOutputStream out;
+        private final long firstSeed;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final int[] sourceLengths;
+        private final long[] structuralHashes;
+        private long position;
+        private boolean finished;
+
+        private Writer(Path path, long firstSeed, int seedCount) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+            this.firstSeed = firstSeed;
+            this.offsets = new long[seedCount];
+            Arrays.fill(this.offsets, -1);
+            this.lengths = new int[seedCount];
+            this.sourceLengths = new int[seedCount];
+            this.structuralHashes = new long[seedCount];
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.position = HEADER_SIZE;
+        }
+
+        /**
+         * Adds the program of the given seed.
+         *
+         * @param seed the seed of the program, within the seeds of the archive
+         * @param entry the compressed program
+         * @throws IOException if the program could not be written
+         */
+        public void add(long seed, Entry entry) throws IOException {
+            if (this.finished) {
+                throw new IllegalStateException("The archive is finished already");
+            }
+            if (seed - this.firstSeed < 0 || seed - this.firstSeed >= this.offsets.length) {
+                throw new IllegalArgumentException("The seed %d is not part of the archive".formatted(seed));
+            }
+            int index = (int) (seed - this.firstSeed);
+            if (this.offsets[index] >= 0) {
+                throw new IllegalArgumentException("The program of seed %d was added already".formatted(seed));
+            }
+            this.out.write(entry.data());
+            this.offsets[index] = this.position;
+            this.lengths[index] = entry.data().length;
+            this.sourceLengths[index] = entry.sourceLength();
+            this.structuralHashes[index] = entry.structuralHash();
+            this.position += entry.data().length;
+        }
+
+        /**
+         * Writes the index and closes the archive. Seeds without a program are absent from the archive.
+         *
+         * @throws IOException if the index could not be written
+         */
+        public void finish() throws IOException {
+            if (this.finished) {
+                throw new IllegalStateException("The archive is finished already");
+            }
+            long indexStart = this.position;
+            for (int i = 0; i < this.offsets.length; i++) {
+                this.out.writeLong(this.offsets[i]);
+                this.out.writeInt(this.lengths[i]);
+                this.out.writeInt(this.sourceLengths[i]);
+                this.out.writeLong(this.structuralHashes[i]);
+            }
+            this.out.writeLong(indexStart);
+            this.out.writeLong(this.firstSeed);
+            this.out.writeInt(this.offsets.length);
+            this.out.writeInt(MAGIC);
+            this.out.close();
+            this.finished = true;
+        }
+
+        /**
+         * Closes the archive, deleting it unless it was {@linkplain #finish() finished}.
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            try {
+                this.out.close();
+            } finally {
+                Files.deleteIfExists(this.path);
+            }
+        }
+    }
+}
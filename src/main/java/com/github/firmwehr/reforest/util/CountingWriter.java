@@ -0,0 +1,38 @@
+package com.github.firmwehr.reforest.util;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer counting the chars written through it.
+ */
+public final class CountingWriter extends FilterWriter {
+    private long count;
+
+    public CountingWriter(Writer out) {
+        super(out);
+    }
+
+    public long count() {
+        return this.count;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        this.out.write(c);
+        this.count++;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        this.out.write(cbuf, off, len);
+        this.count += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        this.out.write(str, off, len);
+        this.count += len;
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.firmwehr.reforest.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds the word list from the resources. Native images initialize this class at build time (see
+ * {@code native-image.properties}), so the sorted list is part of the image heap.
+ */
+final class EmbeddedWordList {
+    static final WordList WORDS = load();
+
+    private EmbeddedWordList() {
+    }
+
+    private static WordList load() {
+        try (InputStream in = EmbeddedWordList.class.getResourceAsStream("/words.txt")) {
+            if (in == null) {
+                throw new IllegalStateException("The word list is missing from the resources");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+            return WordList.of(WordList.readWords(reader));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.firmwehr.reforest.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of 64 bit fingerprints of char sequences, stored in a primitive open addressing table.
+ * Used to keep generated names unique without hashing or storing strings.
+ * <p>
+ * Two different sequences with the same fingerprint are considered equal. With 64 bits that is
+ * unlikely enough to not matter for the few thousand names of a scope, and the only effect is that
+ * a name is rejected although it was free.
+ */
+public final class FingerprintSet {
+    private static final long EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] table;
+    private int size;
+
+    public FingerprintSet() {
+        this.table = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds the fingerprint of the given sequence.
+     *
+     * @param sequence the sequence to add
+     * @return {@code true} if the sequence was not contained before
+     */
+    public boolean add(CharSequence sequence) {
+        return add(fingerprint(sequence));
+    }
+
+    public boolean contains(CharSequence sequence) {
+        return contains(fingerprint(sequence));
+    }
+
+    public boolean contains(long fingerprint) {
+        int mask = this.table.length - 1;
+        for (int i = (int) fingerprint & mask; this.table[i] != EMPTY; i = (i + 1) & mask) {
+            if (this.table[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all fingerprints, keeping the table for reuse.
+     */
+    public void clear() {
+        Arrays.fill(this.table, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Adds a fingerprint computed elsewhere, e.g. a structural hash of a program.
+     *
+     * @param fingerprint the fingerprint to add, which must not be {@code 0}
+     * @return {@code true} if the fingerprint was not contained before
+     */
+    public boolean add(long fingerprint) {
+        if (fingerprint == EMPTY) {
+            throw new IllegalArgumentException("The fingerprint must not be 0");
+        }
+        int mask = this.table.length - 1;
+        int i = (int) fingerprint & mask;
+        while (this.table[i] != EMPTY) {
+            if (this.table[i] == fingerprint) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        this.table[i] = fingerprint;
+        // keep the load factor at most 1/2
+        if (++this.size * 2 > this.table.length) {
+            grow();
+        }
+        return true;
+    }
+
+    private void grow() {
+        long[] old = this.table;
+        this.table = new long[old.length * 2];
+        int mask = this.table.length - 1;
+        for (long fingerprint : old) {
+            if (fingerprint != EMPTY) {
+                int i = (int) fingerprint & mask;
+                while (this.table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                this.table[i] = fingerprint;
+            }
+        }
+    }
+
+    private static long fingerprint(CharSequence sequence) {
+        // FNV-1a over the chars, followed by the murmur3 finalizer to spread the bits used as index
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < sequence.length(); i++) {
+            hash = (hash ^ sequence.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB93FE1A85EC9L;
+        hash ^= hash >>> 33;
+        // EMPTY marks free slots
+        return hash == EMPTY ? 1 : hash;
+    }
+}
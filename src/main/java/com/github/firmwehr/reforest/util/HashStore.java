@@ -0,0 +1,122 @@
+package com.github.firmwehr.reforest.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A set of 64 bit hashes that can be kept in a file, so it grows across runs. The file is read into a
+ * {@link FingerprintSet} when opened, and new hashes are appended to it right away.
+ * <p>
+ * The format is a header of magic number and version as big endian ints, followed by the hashes as big endian
+ * longs. An incomplete hash at the end, as left by a crash, is ignored and overwritten. Not thread-safe.
+ */
+public final class HashStore implements Closeable {
+    private static final int MAGIC = 0x52464853; // RFHS
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final FingerprintSet hashes = new FingerprintSet();
+    private final FileChannel file;
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    private HashStore(FileChannel file) {
+        this.file = file;
+    }
+
+    /**
+     * {@return a store that is only kept in memory}
+     */
+    public static HashStore inMemory() {
+        return new HashStore(null);
+    }
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist.
+     *
+     * @param path the file of the store
+     * @return the opened store
+     * @throws IOException if the file could not be read or is not a hash store
+     */
+    public static HashStore open(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            HashStore store = new HashStore(file);
+            if (file.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) {
+                    file.write(header);
+                }
+                return store;
+            }
+            long count = (file.size() - HEADER_SIZE) / Long.BYTES;
+            try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("The file '%s' is not a hash store".formatted(path));
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("The hash store '%s' has version %d, expected %d".formatted(path, version, VERSION));
+                }
+                for (long i = 0; i < count; i++) {
+                    store.hashes.add(nonZero(in.readLong()));
+                }
+            } catch (EOFException e) {
+                throw new IOException("The file '%s' is not a hash store".formatted(path), e);
+            }
+            file.position(HEADER_SIZE + count * Long.BYTES);
+            return store;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the given hash, appending it to the file if it was not contained before.
+     *
+     * @param hash the hash to add
+     * @return {@code true} if the hash was not contained before
+     * @throws IOException if the hash could not be written
+     */
+    public boolean add(long hash) throws IOException {
+        if (!this.hashes.add(nonZero(hash))) {
+            return false;
+        }
+        if (this.file != null) {
+            this.buffer.clear().putLong(hash).flip();
+            while (this.buffer.hasRemaining()) {
+                this.file.write(this.buffer);
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(long hash) {
+        return this.hashes.contains(nonZero(hash));
+    }
+
+    public int size() {
+        return this.hashes.size();
+    }
+
+    private static long nonZero(long hash) {
+        // the fingerprint set uses 0 for free slots
+        return hash == 0 ? 1 : hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.file != null) {
+            this.file.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.firmwehr.reforest.util;
+
+import javax.lang.model.SourceVersion;
+import java.util.random.RandomGenerator;
+
+/**
+ * Builds camel case identifiers out of the words of a {@link WordList}. Names are assembled in a
+ * reused builder, and only the final name is turned into a string.
+ * <p>
+ * As the words of a word list are ordered by length, the words fitting into the remaining length of a
+ * name are a prefix of the list. Picking from that prefix makes names exactly as long as requested,
+ * as long as the list contains a word of length one, without retrying.
+ * <p>
+ * Instances keep state and are not thread safe.
+ */
+public final class IdentifierGenerator {
+    private final WordList words;
+    private final StringBuilder builder = new StringBuilder();
+
+    public IdentifierGenerator(WordList words) {
+        if (words.size() == 0) {
+            throw new IllegalArgumentException("The word list is empty");
+        }
+        this.words = words;
+    }
+
+    /**
+     * {@return a name like {@code FooBarBaz}, used for types}
+     *
+     * @param random the source of randomness
+     * @param length the length of the name, without a possibly appended number
+     */
+    public String upperCamelCase(RandomGenerator random, int length) {
+        build(random, length, true);
+        return this.builder.toString();
+    }
+
+    /**
+     * {@return a name like {@code fooBarBaz}, used for members and variables}
+     *
+     * @param random the source of randomness
+     * @param length the length of the name, without a possibly appended number
+     */
+    public String lowerCamelCase(RandomGenerator random, int length) {
+        build(random, length, false);
+        return this.builder.toString();
+    }
+
+    /**
+     * Like {@link #upperCamelCase(RandomGenerator, int)}, but only returns names that are not in the
+     * given scope yet, and adds the returned name to it. Names get longer than requested if a name of
+     * that length is taken already.
+     *
+     * @param random the source of randomness
+     * @param length the minimum length of the name
+     * @param scope the names that are taken already
+     * @return the new name
+     */
+    public String uniqueUpperCamelCase(RandomGenerator random, int length, FingerprintSet scope) {
+        // there are only few short names, make them longer until one is free
+        for (int attempt = length; ; attempt++) {
+            build(random, attempt, true);
+            if (scope.add(this.builder)) {
+                return this.builder.toString();
+            }
+        }
+    }
+
+    /**
+     * Like {@link #lowerCamelCase(RandomGenerator, int)}, but only returns names that are not in the
+     * given scope yet, and adds the returned name to it. Names get longer than requested if a name of
+     * that length is taken already.
+     *
+     * @param random the source of randomness
+     * @param length the minimum length of the name
+     * @param scope the names that are taken already
+     * @return the new name
+     */
+    public String uniqueLowerCamelCase(RandomGenerator random, int length, FingerprintSet scope) {
+        // there are only few short names, make them longer until one is free
+        for (int attempt = length; ; attempt++) {
+            build(random, attempt, false);
+            if (scope.add(this.builder)) {
+                return this.builder.toString();
+            }
+        }
+    }
+
+    private void build(RandomGenerator random, int length, boolean upperFirst) {
+        StringBuilder builder = this.builder;
+        builder.setLength(0);
+        int wordCount = 0;
+        do {
+            int candidates = this.words.countOfLengthAtMost(length - builder.length());
+            if (candidates == 0) {
+                // no word is short enough, overshoot
+                candidates = this.words.size();
+            }
+            int start = builder.length();
+            this.words.appendTo(random.nextInt(candidates), builder);
+            if (upperFirst || wordCount > 0) {
+                builder.setCharAt(start, Character.toUpperCase(builder.charAt(start)));
+            }
+            wordCount++;
+        } while (builder.length() < length);
+        // words are valid identifiers, so their camel case concatenation is too. Keywords only consist
+        // of lower case ASCII letters, which rules out all names made of more than one word
+        if (wordCount == 1 && SourceVersion.isKeyword(builder)) {
+            builder.append(random.nextInt(0, 42));
+        }
+    }
+}
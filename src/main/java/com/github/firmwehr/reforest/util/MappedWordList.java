@@ -0,0 +1,151 @@
+package com.github.firmwehr.reforest.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A compiled word list that is memory-mapped instead of read onto the heap. Words are only turned into
+ * strings when they are requested, and all users of the same file share the mapped pages.
+ * <p>
+ * The format is a header of magic number, version, word count and maximum word length, followed by
+ * {@code maxLength + 1} length bucket ends, {@code count + 1} offsets into the data section and the
+ * ISO-8859-1 encoded words, ordered by length. All numbers are big endian ints.
+ */
+public final class MappedWordList implements WordList {
+    private static final int MAGIC = 0x5246574C; // RFWL
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int maxLength;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    private MappedWordList(ByteBuffer buffer, int size, int maxLength) {
+        this.buffer = buffer;
+        this.size = size;
+        this.maxLength = maxLength;
+        this.offsetsStart = HEADER_SIZE + (maxLength + 1) * Integer.BYTES;
+        this.dataStart = this.offsetsStart + (size + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Writes a compiled word list. The words are expected to be filtered and deduplicated already,
+     * see {@link WordList#readTextFile(Path)}.
+     *
+     * @param words the words to write
+     * @param path the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void compile(List<String> words, Path path) throws IOException {
+        WordList sorted = WordList.of(words);
+        int maxLength = sorted.size() == 0 ? 0 : sorted.length(sorted.size() - 1);
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(maxLength);
+            for (int length = 0; length <= maxLength; length++) {
+                out.writeInt(sorted.countOfLengthAtMost(length));
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (int i = 0; i < sorted.size(); i++) {
+                offset += sorted.length(i);
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < sorted.size(); i++) {
+                out.write(sorted.get(i).getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    public static boolean isCompiled(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = in.readNBytes(Integer.BYTES);
+            return magic.length == Integer.BYTES && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    public static MappedWordList map(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("'%s' is not a compiled word list".formatted(path));
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("'%s' has unsupported version %d, compile it again"
+                    .formatted(path, buffer.getInt(Integer.BYTES)));
+        }
+        int size = buffer.getInt(2 * Integer.BYTES);
+        int maxLength = buffer.getInt(3 * Integer.BYTES);
+        if (size < 0 || maxLength < 0) {
+            throw new IOException("'%s' is corrupt".formatted(path));
+        }
+        var wordList = new MappedWordList(buffer, size, maxLength);
+        if (wordList.dataStart > buffer.limit()
+                || wordList.dataStart + wordList.offset(size) != buffer.limit()) {
+            throw new IOException("'%s' is truncated or corrupt".formatted(path));
+        }
+        return wordList;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, this.size);
+        int start = offset(index);
+        byte[] bytes = new byte[offset(index + 1) - start];
+        // absolute bulk get, doesn't touch the position of the shared buffer
+        this.buffer.get(this.dataStart + start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public int length(int index) {
+        Objects.checkIndex(index, this.size);
+        return offset(index + 1) - offset(index);
+    }
+
+    @Override
+    public void appendTo(int index, StringBuilder builder) {
+        Objects.checkIndex(index, this.size);
+        int end = this.dataStart + offset(index + 1);
+        for (int i = this.dataStart + offset(index); i < end; i++) {
+            builder.append((char) (this.buffer.get(i) & 0xFF));
+        }
+    }
+
+    @Override
+    public int countOfLengthAtMost(int length) {
+        if (length < 0) {
+            return 0;
+        }
+        if (length >= this.maxLength) {
+            return this.size;
+        }
+        return this.buffer.getInt(HEADER_SIZE + length * Integer.BYTES);
+    }
+
+    private int offset(int index) {
+        return this.buffer.getInt(this.offsetsStart + index * Integer.BYTES);
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.firmwehr.reforest.util;
+
+/**
+ * Derives independent seeds from a seed and a position, so parts of a program can get their own random
+ * generator no matter in which order or on which thread they are generated.
+ */
+public final class Seeds {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private Seeds() {
+    }
+
+    /**
+     * {@return the seed of the child at the given index}
+     *
+     * @param seed the seed of the parent
+     * @param index the index of the child
+     */
+    public static long derive(long seed, long index) {
+        // the SplitMix64 output function applied to a distinct state per child
+        long z = seed + (index + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
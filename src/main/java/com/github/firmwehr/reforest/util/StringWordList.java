@@ -0,0 +1,53 @@
+package com.github.firmwehr.reforest.util;
+
+import java.util.Comparator;
+import java.util.List;
+
+final class StringWordList implements WordList {
+    private final List<String> words;
+    // lengthEnds[i] is the amount of words with at most i chars
+    private final int[] lengthEnds;
+
+    StringWordList(List<String> words) {
+        // stable, so lists with the same words in the same order generate the same identifiers
+        this.words = words.stream()
+                .sorted(Comparator.comparingInt(String::length))
+                .toList();
+        int maxLength = this.words.isEmpty() ? 0 : this.words.get(this.words.size() - 1).length();
+        this.lengthEnds = new int[maxLength + 1];
+        for (String word : this.words) {
+            this.lengthEnds[word.length()]++;
+        }
+        for (int i = 1; i < this.lengthEnds.length; i++) {
+            this.lengthEnds[i] += this.lengthEnds[i - 1];
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.words.size();
+    }
+
+    @Override
+    public String get(int index) {
+        return this.words.get(index);
+    }
+
+    @Override
+    public int length(int index) {
+        return this.words.get(index).length();
+    }
+
+    @Override
+    public void appendTo(int index, StringBuilder builder) {
+        builder.append(this.words.get(index));
+    }
+
+    @Override
+    public int countOfLengthAtMost(int length) {
+        if (length < 0) {
+            return 0;
+        }
+        return length < this.lengthEnds.length ? this.lengthEnds[length] : this.words.size();
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.firmwehr.reforest.util;
+
+import javax.lang.model.SourceVersion;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The words identifiers are built from, ordered by length. That way the words up to a given length
+ * are always a prefix of the list, see {@link #countOfLengthAtMost(int)}.
+ * Implementations must be safe to use from multiple threads.
+ */
+public interface WordList {
+
+    int size();
+
+    String get(int index);
+
+    int length(int index);
+
+    /**
+     * Appends the word at the given index without creating a string for it.
+     *
+     * @param index the index of the word
+     * @param builder the builder to append to
+     */
+    void appendTo(int index, StringBuilder builder);
+
+    /**
+     * {@return the amount of words that are at most {@code length} chars long}
+     */
+    int countOfLengthAtMost(int length);
+
+    static WordList of(List<String> words) {
+        return new StringWordList(words);
+    }
+
+    /**
+     * {@return the word list shipped with reforest} It is loaded once, and in native images already
+     * while building the image, so they don't need any files at runtime.
+     */
+    static WordList embedded() {
+        return EmbeddedWordList.WORDS;
+    }
+
+    /**
+     * Loads a word list, either a compiled one (see {@link MappedWordList}) or a text file with one word
+     * per line. Words of text files that are no valid identifiers are skipped, as are duplicates.
+     *
+     * @param path the path of the word list
+     * @return the loaded word list
+     * @throws IOException if the file could not be read
+     */
+    static WordList load(Path path) throws IOException {
+        if (MappedWordList.isCompiled(path)) {
+            return MappedWordList.map(path);
+        }
+        return of(readTextFile(path));
+    }
+
+    static List<String> readTextFile(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+            return readWords(reader);
+        }
+    }
+
+    /**
+     * Reads a text word list, see {@link #load(Path)}.
+     *
+     * @param reader the reader to read the words from, one per line
+     * @return the valid and distinct words, in the order read
+     */
+    static List<String> readWords(BufferedReader reader) {
+        return reader.lines()
+                .filter(SourceVersion::isIdentifier)
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,178 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.GenerationLimits;
+import com.github.firmwehr.reforest.RandomSourceGeneratorSettings.SizeTarget;
+import com.github.firmwehr.reforest.model.ClassDeclaration;
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.MethodDeclaration;
+import com.github.firmwehr.reforest.util.WordList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RandomSourceGeneratorTest {
+    private static final int SEEDS = 100;
+
+    @Test
+    void generatesTheSameProgramsInParallel() throws IOException {
+        RandomSourceGeneratorSettings unlimited = settings(GenerationLimits.NONE);
+        // the nodes are shared by all bodies, which must not depend on the order they are generated in
+        RandomSourceGeneratorSettings limited = settings(new GenerationLimits(3000, null, 0));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (long seed = 0; seed < SEEDS; seed++) {
+                assertEquals(generate(seed, unlimited, null), generate(seed, unlimited, pool), "seed " + seed);
+                assertEquals(generate(seed, limited, null), generate(seed, limited, pool),
+                        "seed " + seed + " with node limit");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void regeneratesSingleMethodsLikeTheFullProgram() throws IOException {
+        List<RandomSourceGeneratorSettings> variants = List.of(
+                settings(GenerationLimits.NONE),
+                settings(new GenerationLimits(3000, null, 0))
+        );
+        for (RandomSourceGeneratorSettings settings : variants) {
+            for (long seed = 0; seed < SEEDS / 4; seed++) {
+                List<ClassDeclaration> program = RandomProgramGenerator.createGenerator(seed, settings).generateProgram();
+                for (ClassDeclaration declaration : program) {
+                    ClassSkeleton skeleton = declaration.skeleton();
+                    ClassSkeleton fieldsOnly = new ClassSkeleton(skeleton.name(), skeleton.type(), skeleton.fields(),
+                            List.of());
+                    for (MethodDeclaration method : declaration.methods()) {
+                        StringWriter expected = new StringWriter();
+                        new MiniJavaPrinter(expected).printClass(new ClassDeclaration(fieldsOnly, List.of(method)));
+                        StringWriter only = new StringWriter();
+                        assertTrue(RandomProgramGenerator.createGenerator(seed, settings)
+                                .generateMethod(skeleton.name(), method.method().name(), new MiniJavaPrinter(only)));
+                        assertEquals(expected.toString(), only.toString(),
+                                "seed %d, %s.%s".formatted(seed, skeleton.name(), method.method().name()));
+                    }
+                }
+                assertFalse(RandomProgramGenerator.createGenerator(seed, settings)
+                        .generateMethod("NoSuchClass", "main", new MiniJavaPrinter(new StringWriter())));
+            }
+        }
+    }
+
+    @Test
+    void generatesTheSameProgramsAfterReset() throws IOException {
+        List<RandomSourceGeneratorSettings> variants = List.of(
+                settings(GenerationLimits.NONE),
+                settings(new GenerationLimits(3000, null, 0)),
+                settings(new SizeTarget(SizeTarget.Unit.NODES, 5000), GenerationLimits.NONE)
+        );
+        for (RandomSourceGeneratorSettings settings : variants) {
+            RandomSourceGenerator generator = RandomProgramGenerator.createGenerator(-1, settings);
+            generate(generator, null);
+            // backwards and repeated, so nothing carries over from the program generated before
+            for (long seed = SEEDS / 2 - 1; seed >= 0; seed--) {
+                for (int repetition = 0; repetition < 2; repetition++) {
+                    generator.reset(seed);
+                    assertEquals(generate(seed, settings, null), generate(generator, null), "seed " + seed);
+                }
+            }
+        }
+    }
+
+    @Test
+    void generatesIterativeBodiesLikeRecursiveOnesAtTheirDepth() throws IOException {
+        assertIterativeBodiesLikeRecursiveOnes(GrammarWeights.DEFAULT, SEEDS);
+    }
+
+    @Test
+    void generatesIterativeBodiesLikeRecursiveOnesWithOtherWeights(@TempDir Path directory) throws IOException {
+        // every kind of production, so both generators have to draw the same numbers for each of them
+        Path path = directory.resolve("weights.properties");
+        Files.writeString(path, """
+                statement.block=0.2
+                statement.while=0.15
+                statement.empty=0
+                primary.parenthesized=0.3
+                primary.method_invocation=0.2
+                primary.literal=0.1
+                operator.logical_or=0.3
+                operator.equality=0.25
+                operator.additive=0.4
+                operator.unary=0.4
+                """);
+        assertIterativeBodiesLikeRecursiveOnes(GrammarWeights.DEFAULT.withOverrides(path), SEEDS / 4);
+    }
+
+    private static void assertIterativeBodiesLikeRecursiveOnes(GrammarWeights weights, int seeds)
+            throws IOException {
+        int depth = GenerationLimits.RECURSIVE_DEPTH;
+        RandomSourceGeneratorSettings recursive = settings(weights, null, GenerationLimits.NONE);
+        RandomSourceGeneratorSettings iterative = settings(weights, null,
+                new GenerationLimits(Long.MAX_VALUE, null, depth));
+        RandomSourceGeneratorSettings recursiveLimited = settings(weights, null, new GenerationLimits(3000, null, 0));
+        RandomSourceGeneratorSettings iterativeLimited = settings(weights, null,
+                new GenerationLimits(3000, null, depth));
+        for (long seed = 0; seed < seeds; seed++) {
+            assertEquals(generate(seed, recursive, null), generate(seed, iterative, null), "seed " + seed);
+            assertEquals(generate(seed, recursiveLimited, null), generate(seed, iterativeLimited, null),
+                    "seed " + seed + " with node limit");
+        }
+    }
+
+    /**
+     * {@return the default settings of the command line, with the given limits}
+     */
+    static RandomSourceGeneratorSettings settings(GenerationLimits limits) {
+        return settings(null, limits);
+    }
+
+    /**
+     * {@return the default settings of the command line, with the given size target and limits}
+     */
+    static RandomSourceGeneratorSettings settings(SizeTarget sizeTarget, GenerationLimits limits) {
+        return settings(GrammarWeights.DEFAULT, sizeTarget, limits);
+    }
+
+    /**
+     * {@return the default settings of the command line, with the given grammar weights, size target and limits}
+     */
+    static RandomSourceGeneratorSettings settings(GrammarWeights weights, SizeTarget sizeTarget,
+                                                  GenerationLimits limits) {
+        return new RandomSourceGeneratorSettings(
+                0.3,
+                0.15,
+                24,
+                10,
+                5,
+                10,
+                15,
+                WordList.embedded(),
+                weights.statementWeights(),
+                weights.primaryExpressionWeights(),
+                weights.operatorProbabilities(),
+                sizeTarget,
+                limits
+        );
+    }
+
+    private static String generate(long seed, RandomSourceGeneratorSettings settings, ForkJoinPool pool)
+            throws IOException {
+        return generate(RandomProgramGenerator.createGenerator(seed, settings), pool);
+    }
+
+    private static String generate(RandomSourceGenerator generator, ForkJoinPool pool) throws IOException {
+        StringWriter program = new StringWriter();
+        generator.generateProgram(new MiniJavaPrinter(program), pool);
+        return program.toString();
+    }
+}
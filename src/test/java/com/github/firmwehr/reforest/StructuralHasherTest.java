@@ -0,0 +1,115 @@
+package com.github.firmwehr.reforest;
+
+import com.github.firmwehr.reforest.model.ClassSkeleton;
+import com.github.firmwehr.reforest.model.Expression.Assignment;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperation;
+import com.github.firmwehr.reforest.model.Expression.BinaryOperator;
+import com.github.firmwehr.reforest.model.Expression.BooleanLiteral;
+import com.github.firmwehr.reforest.model.Expression.IntegerLiteral;
+import com.github.firmwehr.reforest.model.Expression.MethodInvocation;
+import com.github.firmwehr.reforest.model.Expression.NewObject;
+import com.github.firmwehr.reforest.model.Expression.VariableAccess;
+import com.github.firmwehr.reforest.model.Field;
+import com.github.firmwehr.reforest.model.LocalVariable;
+import com.github.firmwehr.reforest.model.Method;
+import com.github.firmwehr.reforest.model.Parameter;
+import com.github.firmwehr.reforest.model.Statement.Block;
+import com.github.firmwehr.reforest.model.Statement.ExpressionStatement;
+import com.github.firmwehr.reforest.model.Statement.IfStatement;
+import com.github.firmwehr.reforest.model.Statement.LocalVariableDeclaration;
+import com.github.firmwehr.reforest.model.Statement.ReturnStatement;
+import com.github.firmwehr.reforest.model.Type;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class StructuralHasherTest {
+
+    @Test
+    void ignoresIdentifiersAndLiteralValues() {
+        StructuralHasher original = new StructuralHasher();
+        addClass(original, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.PLUS);
+        StructuralHasher renamed = new StructuralHasher();
+        addClass(renamed, new Names("Other", "size", "next", "add", "x", "result"), 42, false, BinaryOperator.PLUS);
+
+        assertEquals(original.programHash(), renamed.programHash());
+        assertArrayEquals(original.methodHashes(), renamed.methodHashes());
+    }
+
+    @Test
+    void distinguishesStructure() {
+        StructuralHasher plus = new StructuralHasher();
+        addClass(plus, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.PLUS);
+        StructuralHasher minus = new StructuralHasher();
+        addClass(minus, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.MINUS);
+
+        assertNotEquals(plus.programHash(), minus.programHash());
+        assertNotEquals(plus.methodHashes()[0], minus.methodHashes()[0]);
+    }
+
+    @Test
+    void distinguishesReusedIdentifiers() {
+        // the local variable has the name of the field, which is a different structure than two names
+        StructuralHasher distinct = new StructuralHasher();
+        addClass(distinct, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.PLUS);
+        StructuralHasher reused = new StructuralHasher();
+        addClass(reused, new Names("Main", "count", "self", "sum", "value", "count"), 1, true, BinaryOperator.PLUS);
+
+        assertNotEquals(distinct.programHash(), reused.programHash());
+    }
+
+    @Test
+    void hashesMethodsIndependentlyOfTheirClass() {
+        StructuralHasher hasher = new StructuralHasher();
+        addClass(hasher, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.PLUS);
+        addClass(hasher, new Names("Other", "size", "next", "add", "x", "result"), 7, false, BinaryOperator.PLUS);
+        StructuralHasher single = new StructuralHasher();
+        addClass(single, new Names("Main", "count", "self", "sum", "value", "total"), 1, true, BinaryOperator.PLUS);
+
+        long[] methodHashes = hasher.methodHashes();
+        assertEquals(2, methodHashes.length);
+        assertEquals(methodHashes[0], methodHashes[1]);
+        assertEquals(single.methodHashes()[0], methodHashes[1]);
+        assertNotEquals(single.programHash(), hasher.programHash());
+    }
+
+    /**
+     * Passes a class with two fields and a method using all kinds of identifiers to the hasher.
+     */
+    private static void addClass(StructuralHasher hasher, Names names, int literal, boolean condition,
+                                 BinaryOperator operator) {
+        Type type = Type.named(names.className());
+        Field count = new Field(names.intField(), Type.INT);
+        Field self = new Field(names.classField(), type);
+        Parameter parameter = new Parameter(names.parameter(), Type.INT);
+        LocalVariable local = new LocalVariable(names.local(), Type.INT);
+        Method method = new Method(names.method(), Type.INT, List.of(parameter), List.of(), false);
+        Block body = new Block(List.of(
+                new LocalVariableDeclaration(local, new IntegerLiteral(literal)),
+                new ExpressionStatement(new Assignment(
+                        new VariableAccess(self),
+                        new NewObject(type),
+                        type
+                )),
+                new ExpressionStatement(new Assignment(
+                        new VariableAccess(local),
+                        new BinaryOperation(operator, new VariableAccess(parameter), new VariableAccess(count), Type.INT),
+                        Type.INT
+                )),
+                new IfStatement(new BooleanLiteral(condition), new ReturnStatement(new VariableAccess(local)), null),
+                new ReturnStatement(new MethodInvocation(method, List.of(new IntegerLiteral(literal))))
+        ));
+        ClassSkeleton skeleton = new ClassSkeleton(names.className(), type, List.of(count, self), List.of(method));
+        hasher.startClass(skeleton);
+        hasher.method(method, body);
+        hasher.endClass(skeleton);
+    }
+
+    private record Names(String className, String intField, String classField, String method, String parameter,
+                         String local) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.firmwehr.reforest.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorpusArchiveTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTrip() throws IOException {
+        Path path = this.directory.resolve("corpus.rfc");
+        try (CorpusArchive.Writer writer = CorpusArchive.create(path, 10, 5)) {
+            writer.add(12, CorpusArchive.Entry.compress(source(12), 1212));
+            writer.add(10, CorpusArchive.Entry.compress(source(10), 1010));
+            writer.add(14, CorpusArchive.Entry.compress("", 1414));
+            writer.finish();
+        }
+
+        CorpusArchive archive = CorpusArchive.map(path);
+        assertEquals(10, archive.firstSeed());
+        assertEquals(5, archive.seedCount());
+        assertArrayEquals(new long[]{10, 12, 14}, archive.seeds().toArray());
+        assertTrue(archive.contains(10));
+        assertFalse(archive.contains(11));
+        assertFalse(archive.contains(9));
+        assertFalse(archive.contains(15));
+        assertArrayEquals(source(10).getBytes(StandardCharsets.UTF_8), archive.source(10));
+        assertArrayEquals(source(12).getBytes(StandardCharsets.UTF_8), archive.source(12));
+        assertArrayEquals(new byte[0], archive.source(14));
+        assertEquals(1010, archive.structuralHash(10));
+        assertEquals(1212, archive.structuralHash(12));
+        assertEquals(1414, archive.structuralHash(14));
+        assertThrows(NoSuchElementException.class, () -> archive.source(11));
+        assertThrows(NoSuchElementException.class, () -> archive.structuralHash(15));
+    }
+
+    @Test
+    void readsAcrossSegments() throws IOException {
+        Path path = this.directory.resolve("corpus.rfc");
+        int count = 50;
+        try (CorpusArchive.Writer writer = CorpusArchive.create(path, 0, count)) {
+            for (int seed = 0; seed < count; seed++) {
+                writer.add(seed, CorpusArchive.Entry.compress(source(seed), seed * 31L));
+            }
+            writer.finish();
+        }
+
+        // segment sizes not dividing the size of the header, index entries and trailer, so they all span segments
+        for (int segmentSize : new int[]{7, 37, 100}) {
+            CorpusArchive archive = CorpusArchive.map(path, segmentSize);
+            assertEquals(count, archive.seedCount());
+            for (int seed = 0; seed < count; seed++) {
+                assertArrayEquals(source(seed).getBytes(StandardCharsets.UTF_8), archive.source(seed));
+                assertEquals(seed * 31L, archive.structuralHash(seed));
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedArchives() throws IOException {
+        Path path = this.directory.resolve("corpus.rfc");
+        try (CorpusArchive.Writer writer = CorpusArchive.create(path, 0, 3)) {
+            for (int seed = 0; seed < 3; seed++) {
+                writer.add(seed, CorpusArchive.Entry.compress(source(seed), seed));
+            }
+            writer.finish();
+        }
+        long size = Files.size(path);
+
+        for (long truncated = size - 1; truncated >= 0; truncated--) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(truncated);
+            }
+            assertThrows(IOException.class, () -> CorpusArchive.map(path));
+        }
+    }
+
+    @Test
+    void deletesUnfinishedArchives() throws IOException {
+        Path path = this.directory.resolve("corpus.rfc");
+        try (CorpusArchive.Writer writer = CorpusArchive.create(path, 0, 3)) {
+            writer.add(0, CorpusArchive.Entry.compress(source(0), 0));
+        }
+
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void rejectsSeedsOutsideTheArchive() throws IOException {
+        try (CorpusArchive.Writer writer = CorpusArchive.create(this.directory.resolve("corpus.rfc"), 10, 2)) {
+            CorpusArchive.Entry entry = CorpusArchive.Entry.compress(source(0), 0);
+            assertThrows(IllegalArgumentException.class, () -> writer.add(9, entry));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(12, entry));
+            writer.add(10, entry);
+            assertThrows(IllegalArgumentException.class, () -> writer.add(10, entry));
+        }
+    }
+
+    private static String source(long seed) {
+        return ("class C%d {\n    public int f%d;\n}\n".formatted(seed, seed)).repeat((int) (seed % 7) + 1);
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.firmwehr.reforest.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashStoreTest {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsHashesAcrossReopening() throws IOException {
+        Path path = this.directory.resolve("hashes");
+        try (HashStore store = HashStore.open(path)) {
+            assertTrue(store.add(1));
+            assertTrue(store.add(-5));
+            assertTrue(store.add(Long.MAX_VALUE));
+            assertFalse(store.add(1));
+        }
+
+        try (HashStore store = HashStore.open(path)) {
+            assertEquals(3, store.size());
+            assertTrue(store.contains(1));
+            assertTrue(store.contains(-5));
+            assertTrue(store.contains(Long.MAX_VALUE));
+            assertFalse(store.contains(2));
+            assertFalse(store.add(-5));
+            assertTrue(store.add(2));
+        }
+
+        try (HashStore store = HashStore.open(path)) {
+            assertEquals(4, store.size());
+            assertTrue(store.contains(2));
+        }
+        assertEquals(HEADER_SIZE + 4 * Long.BYTES, Files.size(path));
+    }
+
+    @Test
+    void overwritesIncompleteHashAtTheEnd() throws IOException {
+        Path path = this.directory.resolve("hashes");
+        try (HashStore store = HashStore.open(path)) {
+            store.add(10);
+            store.add(20);
+        }
+        // as left by a crash while appending a hash
+        Files.write(path, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (HashStore store = HashStore.open(path)) {
+            assertEquals(2, store.size());
+            assertTrue(store.add(30));
+        }
+        assertEquals(HEADER_SIZE + 3 * Long.BYTES, Files.size(path));
+
+        try (HashStore store = HashStore.open(path)) {
+            assertEquals(3, store.size());
+            assertTrue(store.contains(10));
+            assertTrue(store.contains(20));
+            assertTrue(store.contains(30));
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path path = this.directory.resolve("other");
+        Files.writeString(path, "not a hash store");
+
+        assertThrows(IOException.class, () -> HashStore.open(path));
+    }
+}